@@ -8,6 +8,9 @@ plugins {
 group = "net.kjp12"
 version = "0.0.0"
 
+// The multi-release overlays, each compiled into META-INF/versions/<version> against the Java 11 baseline.
+val overlays = listOf(17, 21)
+
 java {
     sourceCompatibility = JavaVersion.VERSION_11
     targetCompatibility = JavaVersion.VERSION_11
@@ -22,6 +25,13 @@ sourceSets {
         compileClasspath += m.compileClasspath + m.output
         runtimeClasspath += m.runtimeClasspath + m.output
     }
+    for (v in overlays) {
+        create("java$v") {
+            val m = main.get()
+            java.srcDir("src/main/java$v")
+            compileClasspath += m.compileClasspath + m.output
+        }
+    }
 }
 
 repositories {
@@ -37,6 +47,10 @@ dependencies {
 
 jmh {
     profilers.add("jfr")
+    // Opt-in with -Pmetrics for the counters and rehash events to show up in the JFR recordings.
+    if (project.hasProperty("metrics")) {
+        jvmArgsAppend.add("-Dnet.kjp12.hachimitsu.collections.metrics=true")
+    }
     warmupIterations.set(5)
     iterations.set(10)
     fork.set(2)
@@ -44,7 +58,11 @@ jmh {
 
 tasks {
     "jmh" { outputs.upToDateWhen { false } }
-    jmhJar { outputs.upToDateWhen { false } }
+    jmhJar {
+        for (v in overlays) into("META-INF/versions/$v") { from(sourceSets["java$v"].output) }
+        manifest.attributes["Multi-Release"] = "true"
+        outputs.upToDateWhen { false }
+    }
     jmhCompileGeneratedClasses { outputs.upToDateWhen { false } }
     jmhRunBytecodeGenerator { outputs.upToDateWhen { false } }
     create<Jar>("testappJar") {
@@ -68,5 +86,51 @@ tasks {
     }
     test {
         useJUnitPlatform()
+        systemProperty("net.kjp12.hachimitsu.collections.metrics", "true")
+    }
+    jar {
+        for (v in overlays) into("META-INF/versions/$v") { from(sourceSets["java$v"].output) }
+        manifest.attributes["Multi-Release"] = "true"
+    }
+    for (v in overlays) {
+        named<JavaCompile>("compileJava${v}Java") {
+            javaCompiler.set(javaToolchains.compilerFor { languageVersion.set(JavaLanguageVersion.of(v)) })
+            // Incubator modules are missing from --release, so the source and target are set directly.
+            sourceCompatibility = "$v"
+            targetCompatibility = "$v"
+            options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+        }
+        // Runs the tests against the jar rather than the baseline's classes, such that the overlay is picked up.
+        register<Test>("testJava$v") {
+            group = "verification"
+            description = "Runs the tests on Java $v with the vector overlays enabled."
+            javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(v)) })
+            testClassesDirs = sourceSets.test.get().output.classesDirs
+            classpath = files(jar) + sourceSets.test.get().runtimeClasspath - sourceSets.main.get().output
+            useJUnitPlatform()
+            jvmArgs("--add-modules", "jdk.incubator.vector")
+            systemProperty("net.kjp12.hachimitsu.collections.metrics", "true")
+        }
+        // Opt-in to a subset with -Pinclude=<regex>, as the whole suite takes a while.
+        register<JavaExec>("jmhJava$v") {
+            group = "jmh"
+            description = "Runs the benchmarks on Java $v with the vector overlays enabled."
+            javaLauncher.set(javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(v)) })
+            classpath = files(jmhJar)
+            mainClass.set("org.openjdk.jmh.Main")
+            args("-wi", "5", "-i", "10", "-f", "2", "-prof", "jfr",
+                "-jvmArgsAppend", "--add-modules=jdk.incubator.vector",
+                "-rf", "json", "-rff", "$buildDir/results/jmh/java$v.json")
+            if (project.hasProperty("include")) args(project.property("include"))
+            doFirst { mkdir("$buildDir/results/jmh") }
+            outputs.upToDateWhen { false }
+        }
+    }
+    // The overlay tests need the Java 17 and 21 toolchains, so they're kept out of check unless opted-in with -PtestOverlays.
+    register("testOverlays") {
+        group = "verification"
+        description = "Runs the tests on every overlay's Java version with the vector overlays enabled."
+        dependsOn(overlays.map { "testJava$it" })
     }
+    if (project.hasProperty("testOverlays")) check { dependsOn("testOverlays") }
 }
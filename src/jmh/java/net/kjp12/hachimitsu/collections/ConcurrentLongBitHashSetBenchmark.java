@@ -0,0 +1,79 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T12:02:51
+
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Mixed workload of 3 contains to 1 add, sharing the set between all threads.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+public class ConcurrentLongBitHashSetBenchmark {
+    @State(Scope.Benchmark)
+    public static class Concurrent {
+        private final LongSet lbhs = fill(new ConcurrentLongBitHashSet());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synchronized {
+        private final LongSet lbhs = fill(LongSets.synchronize(new LongBitHashSet()));
+    }
+
+    private static LongSet fill(LongSet lbhs) {
+        var random = new Random(661823121367760917L);
+        for (int i = 0; i < 0xFFFFF; i++) {
+            lbhs.add(random.nextLong() & 0xFFFFFFL);
+        }
+        return lbhs;
+    }
+
+    private static boolean mixed(LongSet lbhs) {
+        var random = ThreadLocalRandom.current();
+        long l = random.nextLong() & 0xFFFFFFL;
+        return (l & 3) == 0 ? lbhs.add(l) : lbhs.contains(l);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public static boolean concurrent1(Concurrent state) {
+        return mixed(state.lbhs);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public static boolean concurrent4(Concurrent state) {
+        return mixed(state.lbhs);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public static boolean concurrentMax(Concurrent state) {
+        return mixed(state.lbhs);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public static boolean synchronized1(Synchronized state) {
+        return mixed(state.lbhs);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public static boolean synchronized4(Synchronized state) {
+        return mixed(state.lbhs);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public static boolean synchronizedMax(Synchronized state) {
+        return mixed(state.lbhs);
+    }
+}
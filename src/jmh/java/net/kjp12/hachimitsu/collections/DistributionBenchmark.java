@@ -0,0 +1,484 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T19:20:36
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link LongBitHashSet}, {@link LongOpenHashSet} and {@link BitSet} across key distributions and sizes.
+ * <p>
+ * Every benchmark walks over all {@code size} keys per invocation, so results are per full pass rather than per key.
+ * The mutating benchmarks work on a fresh copy taken per invocation outside of the timed region,
+ * with {@link #copy(Sets, Blackhole)} timing the copy itself.
+ * <p>
+ * {@link BitSet} is benchmarked through its own {@link BitSets} state, suffixed by {@code BitSet}, as it cannot hold
+ * keys beyond {@link Integer#MAX_VALUE} and therefore skips {@link Distribution#UNIFORM_64}.
+ * It also spans up to 256 MiB per set on {@link Distribution#UNIFORM_32} regardless of size, which is rather the point.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DistributionBenchmark {
+    public enum Distribution {
+        /**
+         * Sequential keys from 0, filling every bucket.
+         */
+        DENSE {
+            @Override
+            long key(Random random, int i) {
+                return i;
+            }
+        },
+        /**
+         * Runs of 32 keys within the same 256, scattered across 31 bits.
+         */
+        CLUSTERED {
+            @Override
+            long key(Random random, int i) {
+                return HashCommon.murmurHash3(i >>> 5) & 0x7FFFFF00 | random.nextInt(256);
+            }
+        },
+        /**
+         * Uniform across the non-negative int range, such that {@link BitSet} can still hold it.
+         */
+        UNIFORM_32 {
+            @Override
+            long key(Random random, int i) {
+                return random.nextInt() & 0x7FFFFFFF;
+            }
+        },
+        /**
+         * Uniform across every long.
+         */
+        UNIFORM_64 {
+            @Override
+            long key(Random random, int i) {
+                return random.nextLong();
+            }
+        },
+        /**
+         * One key per 256, giving every key its own bucket.
+         */
+        STRIDE {
+            @Override
+            long key(Random random, int i) {
+                return (long) i << 8;
+            }
+        };
+
+        abstract long key(Random random, int i);
+    }
+
+    /**
+     * The keys, misses and sets of a structure, drawn from a distribution.
+     */
+    abstract static class Fixture {
+        long[] keys, misses, bitmap;
+        Subject set, other;
+
+        abstract Subject create();
+
+        void fill(Distribution distribution, int size) {
+            final Random random = new Random(661823121367760917L);
+            final LongOpenHashSet seen = new LongOpenHashSet(size);
+            keys = new long[size];
+            for (int i = 0, j = 0; i < size; j++) {
+                long k = distribution.key(random, j);
+                if (seen.add(k)) keys[i++] = k;
+            }
+            // Misses are drawn from further along the same distribution.
+            bitmap = new long[size + 63 >>> 6];
+            misses = new long[size];
+            for (int i = 0, j = size; i < size; j++) {
+                long k = distribution.key(random, j);
+                if (!seen.contains(k)) misses[i++] = k;
+            }
+            set = create();
+            other = create();
+            for (long k : keys) set.add(k);
+            // Overlaps half of the set for the bulk operations.
+            for (int i = 0; i < size; i += 2) other.add(keys[i]);
+            for (int i = 1; i < size; i += 2) other.add(misses[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sets extends Fixture {
+        @Param({"LongBitHashSet", "LongOpenHashSet"})
+        public String structure;
+        @Param({"DENSE", "CLUSTERED", "UNIFORM_32", "UNIFORM_64", "STRIDE"})
+        public Distribution distribution;
+        @Param({"1024", "65536", "1048576"})
+        public int size;
+
+        @Setup
+        public void setup() {
+            fill(distribution, size);
+        }
+
+        @Override
+        Subject create() {
+            switch (structure) {
+                case "LongBitHashSet":
+                    return new LongBitHashSubject(new LongBitHashSet());
+                case "LongOpenHashSet":
+                    return new LongOpenHashSubject(new LongOpenHashSet());
+                default:
+                    throw new IllegalArgumentException(structure);
+            }
+        }
+    }
+
+    /**
+     * {@link BitSet} on its own, leaving out {@link Distribution#UNIFORM_64}.
+     */
+    @State(Scope.Thread)
+    public static class BitSets extends Fixture {
+        @Param({"DENSE", "CLUSTERED", "UNIFORM_32", "STRIDE"})
+        public Distribution distribution;
+        @Param({"1024", "65536", "1048576"})
+        public int size;
+
+        @Setup
+        public void setup() {
+            fill(distribution, size);
+        }
+
+        @Override
+        Subject create() {
+            return new BitSetSubject(new BitSet());
+        }
+    }
+
+    /**
+     * A fresh copy of the set per invocation for the mutating benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class Copy {
+        Subject subject;
+
+        @Setup(Level.Invocation)
+        public void setup(Sets sets) {
+            subject = sets.set.copy();
+        }
+    }
+
+    /**
+     * A fresh copy of the {@link BitSet} per invocation for the mutating benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class BitSetCopy {
+        Subject subject;
+
+        @Setup(Level.Invocation)
+        public void setup(BitSets sets) {
+            subject = sets.set.copy();
+        }
+    }
+
+    @Benchmark
+    public static void add(Sets sets, Blackhole bh) {
+        add0(sets, bh);
+    }
+
+    @Benchmark
+    public static void addBitSet(BitSets sets, Blackhole bh) {
+        add0(sets, bh);
+    }
+
+    private static void add0(Fixture fixture, Blackhole bh) {
+        final Subject subject = fixture.create();
+        for (long k : fixture.keys) subject.add(k);
+        bh.consume(subject);
+    }
+
+    @Benchmark
+    public static int containsHit(Sets sets) {
+        return contains0(sets.set, sets.keys);
+    }
+
+    @Benchmark
+    public static int containsHitBitSet(BitSets sets) {
+        return contains0(sets.set, sets.keys);
+    }
+
+    @Benchmark
+    public static int containsMiss(Sets sets) {
+        return contains0(sets.set, sets.misses);
+    }
+
+    @Benchmark
+    public static int containsMissBitSet(BitSets sets) {
+        return contains0(sets.set, sets.misses);
+    }
+
+    private static int contains0(Subject set, long[] keys) {
+        int c = 0;
+        for (long k : keys) if (set.contains(k)) c++;
+        return c;
+    }
+
+    @Benchmark
+    public static int containsBatchHit(Sets sets) {
+        return sets.set.contains(sets.keys, sets.bitmap);
+    }
+
+    @Benchmark
+    public static int containsBatchHitBitSet(BitSets sets) {
+        return sets.set.contains(sets.keys, sets.bitmap);
+    }
+
+    @Benchmark
+    public static int containsBatchMiss(Sets sets) {
+        return sets.set.contains(sets.misses, sets.bitmap);
+    }
+
+    @Benchmark
+    public static int containsBatchMissBitSet(BitSets sets) {
+        return sets.set.contains(sets.misses, sets.bitmap);
+    }
+
+    @Benchmark
+    public static void copy(Sets sets, Blackhole bh) {
+        bh.consume(sets.set.copy());
+    }
+
+    @Benchmark
+    public static void copyBitSet(BitSets sets, Blackhole bh) {
+        bh.consume(sets.set.copy());
+    }
+
+    @Benchmark
+    public static void remove(Sets sets, Copy copy, Blackhole bh) {
+        remove0(copy.subject, sets.keys, bh);
+    }
+
+    @Benchmark
+    public static void removeBitSet(BitSets sets, BitSetCopy copy, Blackhole bh) {
+        remove0(copy.subject, sets.keys, bh);
+    }
+
+    private static void remove0(Subject subject, long[] keys, Blackhole bh) {
+        for (long k : keys) subject.remove(k);
+        bh.consume(subject);
+    }
+
+    @Benchmark
+    public static void iterate(Sets sets, Blackhole bh) {
+        sets.set.iterate(bh);
+    }
+
+    @Benchmark
+    public static void iterateBitSet(BitSets sets, Blackhole bh) {
+        sets.set.iterate(bh);
+    }
+
+    @Benchmark
+    public static void union(Sets sets, Copy copy, Blackhole bh) {
+        copy.subject.or(sets.other);
+        bh.consume(copy.subject);
+    }
+
+    @Benchmark
+    public static void unionBitSet(BitSets sets, BitSetCopy copy, Blackhole bh) {
+        copy.subject.or(sets.other);
+        bh.consume(copy.subject);
+    }
+
+    @Benchmark
+    public static void intersection(Sets sets, Copy copy, Blackhole bh) {
+        copy.subject.and(sets.other);
+        bh.consume(copy.subject);
+    }
+
+    @Benchmark
+    public static void intersectionBitSet(BitSets sets, BitSetCopy copy, Blackhole bh) {
+        copy.subject.and(sets.other);
+        bh.consume(copy.subject);
+    }
+
+    /**
+     * Common view over the structures under test.
+     */
+    abstract static class Subject {
+        abstract void add(long l);
+
+        abstract boolean contains(long l);
+
+        /**
+         * Tests every key into the bitmap, long by long unless the structure has a batched probe.
+         */
+        int contains(long[] keys, long[] bitmap) {
+            int c = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (contains(keys[i])) {
+                    bitmap[i >>> 6] |= 1L << i;
+                    c++;
+                } else {
+                    bitmap[i >>> 6] &= ~(1L << i);
+                }
+            }
+            return c;
+        }
+
+        abstract void remove(long l);
+
+        abstract void iterate(Blackhole bh);
+
+        abstract void or(Subject other);
+
+        abstract void and(Subject other);
+
+        abstract Subject copy();
+    }
+
+    static final class LongBitHashSubject extends Subject {
+        private final LongBitHashSet set;
+
+        LongBitHashSubject(LongBitHashSet set) {
+            this.set = set;
+        }
+
+        @Override
+        void add(long l) {
+            set.add(l);
+        }
+
+        @Override
+        boolean contains(long l) {
+            return set.contains(l);
+        }
+
+        @Override
+        int contains(long[] keys, long[] bitmap) {
+            return set.contains(keys, 0, keys.length, bitmap);
+        }
+
+        @Override
+        void remove(long l) {
+            set.remove(l);
+        }
+
+        @Override
+        void iterate(Blackhole bh) {
+            set.forEach((long l) -> bh.consume(l));
+        }
+
+        @Override
+        void or(Subject other) {
+            set.or(((LongBitHashSubject) other).set);
+        }
+
+        @Override
+        void and(Subject other) {
+            set.and(((LongBitHashSubject) other).set);
+        }
+
+        @Override
+        Subject copy() {
+            return new LongBitHashSubject(new LongBitHashSet(set));
+        }
+    }
+
+    static final class LongOpenHashSubject extends Subject {
+        private final LongOpenHashSet set;
+
+        LongOpenHashSubject(LongOpenHashSet set) {
+            this.set = set;
+        }
+
+        @Override
+        void add(long l) {
+            set.add(l);
+        }
+
+        @Override
+        boolean contains(long l) {
+            return set.contains(l);
+        }
+
+        @Override
+        void remove(long l) {
+            set.remove(l);
+        }
+
+        @Override
+        void iterate(Blackhole bh) {
+            set.forEach((long l) -> bh.consume(l));
+        }
+
+        @Override
+        void or(Subject other) {
+            set.addAll(((LongOpenHashSubject) other).set);
+        }
+
+        @Override
+        void and(Subject other) {
+            set.retainAll(((LongOpenHashSubject) other).set);
+        }
+
+        @Override
+        Subject copy() {
+            return new LongOpenHashSubject(set.clone());
+        }
+    }
+
+    static final class BitSetSubject extends Subject {
+        private final BitSet set;
+
+        BitSetSubject(BitSet set) {
+            this.set = set;
+        }
+
+        @Override
+        void add(long l) {
+            set.set((int) l);
+        }
+
+        @Override
+        boolean contains(long l) {
+            return set.get((int) l);
+        }
+
+        @Override
+        void remove(long l) {
+            set.clear((int) l);
+        }
+
+        @Override
+        void iterate(Blackhole bh) {
+            final BitSet set = this.set;
+            for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) bh.consume(i);
+        }
+
+        @Override
+        void or(Subject other) {
+            set.or(((BitSetSubject) other).set);
+        }
+
+        @Override
+        void and(Subject other) {
+            set.and(((BitSetSubject) other).set);
+        }
+
+        @Override
+        Subject copy() {
+            return new BitSetSubject((BitSet) set.clone());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T23:26:14
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+@State(Scope.Thread)
+public class IntOpenHashSetBenchmark {
+    private IntOpenHashSet iohs = new IntOpenHashSet();
+    private Random random = new Random(661823121367760917L);
+
+    @State(Scope.Thread)
+    public static class Remove {
+        private IntOpenHashSet iohs = new IntOpenHashSet();
+        private Random random = new Random(661823121367760917L);
+
+        {
+            for (int i = 0; i < 0xFFFFFF; i++) {
+                iohs.add(i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RandData {
+        private IntOpenHashSet iohs = new IntOpenHashSet();
+        private Random random = new Random(661823121367760917L);
+
+        {
+            for (int i = 0; i < 0xFFFFFF; i++) {
+                iohs.add(random.nextInt() & 0x7FFFFFFF);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public void add1K() {
+        for (int i = 0; i < 1000; i++) {
+            iohs.add(random.nextInt() & 0xFFFFFF);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public static int contains1K(RandData rd) {
+        int c = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (rd.iohs.contains(rd.random.nextInt() & 0x7FFFFFFF)) c++;
+        }
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public static void rm1K(Remove remove) {
+        for (int i = 0; i < 1000; i++) {
+            remove.iohs.remove(remove.random.nextInt() & 0xFFFFFF);
+        }
+    }
+
+    @Benchmark
+    public static void itr(RandData rd, Blackhole bh) {
+        var itr = rd.iohs.iterator();
+        while (itr.hasNext()) {
+            bh.consume(itr.nextInt());
+        }
+    }
+
+    @Benchmark
+    public static void forEach(RandData rd, Blackhole bh) {
+        rd.iohs.forEach((int i) -> bh.consume(i));
+    }
+}
@@ -84,4 +84,14 @@ public class LongBitHashSetBenchmark {
             bh.consume(itr.nextLong());
         }
     }
+
+    @Benchmark
+    public static void forEach(RandData rd, Blackhole bh) {
+        rd.lbhs.forEach((long l) -> bh.consume(l));
+    }
+
+    @Benchmark
+    public static void forEachRemaining(RandData rd, Blackhole bh) {
+        rd.lbhs.iterator().forEachRemaining((long l) -> bh.consume(l));
+    }
 }
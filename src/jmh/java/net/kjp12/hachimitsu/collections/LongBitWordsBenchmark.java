@@ -0,0 +1,75 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T01:58:42
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bulk word operations of {@link LongBitWords} per bitset, across the widths of each {@link LongBitHashSet.Span}.
+ * <p>
+ * Run through {@code jmh} for the Java 11 baseline, and {@code jmhJava17} or {@code jmhJava21} for the
+ * overlays of the multi-release JAR with {@code jdk.incubator.vector} enabled. Comparing the same width across
+ * the three tells whether an overlay pays off.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LongBitWordsBenchmark {
+    @Param({"4", "64", "1024"})
+    public int words;
+
+    private long[] a, b, into;
+
+    @Setup
+    public void setup() {
+        var random = new Random(661823121367760917L);
+        a = new long[words];
+        b = new long[words];
+        for (int i = 0; i < words; i++) {
+            a[i] = random.nextLong();
+            b[i] = random.nextLong();
+        }
+        into = a.clone();
+    }
+
+    @Benchmark
+    public long[] or() {
+        LongBitWords.or(into, b);
+        return into;
+    }
+
+    @Benchmark
+    public long[] and() {
+        // Restores the bits lost to the AND, as the bitset would otherwise soon be empty.
+        LongBitWords.and(into, b);
+        LongBitWords.or(into, a);
+        return into;
+    }
+
+    @Benchmark
+    public long[] xor() {
+        LongBitWords.xor(into, b);
+        return into;
+    }
+
+    @Benchmark
+    public int bitCount() {
+        return LongBitWords.bitCount(a);
+    }
+
+    @Benchmark
+    public int andCount() {
+        return LongBitWords.andCount(a, b);
+    }
+}
@@ -8,5 +8,8 @@ module net.kjp12.hachimitsu.collections {
     //noinspection JavaRequiresAutoModule
     requires transitive org.jetbrains.annotations;
     requires it.unimi.dsi.fastutil;
+    requires static jdk.jfr;
+    // DirectLongBitHashSet frees its buffers eagerly through sun.misc.Unsafe.
+    requires jdk.unsupported;
     exports net.kjp12.hachimitsu.collections;
 }
\ No newline at end of file
@@ -0,0 +1,575 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T10:04:12
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.jetbrains.annotations.Contract;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free long set based around buckets of hash-keys and bits, safe for use by multiple threads.
+ * <p>
+ * {@link LongBitSetBucket Bitset buckets} are modified in place by compare-and-set of their words.
+ * {@link LongBitHashBucket Hash buckets} are never modified once published, instead being copied
+ * and swapped into the directory by compare-and-set, which is also how promotion to a bitset bucket is published.
+ * <p>
+ * The directory grows cooperatively: each slot of the old directory is replaced by a forwarding marker as
+ * its bucket is moved, and any writer that runs into a marker helps move the remaining buckets before continuing
+ * within the new directory. Readers only ever follow the markers, leaving {@link #contains(long)} wait-free.
+ * <p>
+ * Iteration is weakly consistent. Buckets are never removed from the directory once created.
+ *
+ * @author KJP12
+ * @see LongBitHashSet
+ * @since ${version}
+ **/
+public class ConcurrentLongBitHashSet extends AbstractLongSet implements LongSet {
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle TABLE;
+    private static final VarHandle OCCUPIED;
+    private static final VarHandle RESIZING;
+    private static final VarHandle TRANSFER_INDEX;
+    private static final VarHandle TRANSFERRED;
+
+    static {
+        var lookup = MethodHandles.lookup();
+        try {
+            TABLE = lookup.findVarHandle(ConcurrentLongBitHashSet.class, "table", Table.class);
+            OCCUPIED = lookup.findVarHandle(Table.class, "occupied", int.class);
+            RESIZING = lookup.findVarHandle(Table.class, "resizing", int.class);
+            TRANSFER_INDEX = lookup.findVarHandle(Table.class, "transferIndex", int.class);
+            TRANSFERRED = lookup.findVarHandle(Table.class, "transferred", int.class);
+        } catch (ReflectiveOperationException roe) {
+            throw new ExceptionInInitializerError(roe);
+        }
+    }
+
+    /**
+     * The largest the directory is allowed to grow to.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /**
+     * The amount of slots claimed at a time when helping move buckets into the next directory.
+     */
+    private static final int STRIDE = 64;
+
+    private final LongAdder size = new LongAdder();
+    private volatile Table table = new Table(new Object[8]);
+
+    /**
+     * The approximate size of the set. This may lag behind in-flight modifications.
+     */
+    @Override
+    public int size() {
+        return (int) Math.max(0L, Math.min(size.sum(), Integer.MAX_VALUE));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public LongIterator iterator() {
+        return new j$itr(settle());
+    }
+
+    /**
+     * Clears the set bucket by bucket. Concurrent additions may survive the clear.
+     */
+    @Override
+    public void clear() {
+        final Object[] slots = settle().slots;
+        LongBitBucket bucket;
+        for (int i = 0; i < slots.length; i++) {
+            if ((bucket = resolve(SLOTS.getAcquire(slots, i))) == null) continue;
+            if (bucket instanceof LongBitSetBucket) {
+                size.add(-((LongBitSetBucket) bucket).clearAtomic());
+            } else {
+                for (int j = -1; (j = bucket.nextIndex(j)) >= 0; ) remove(bucket.rawGet(j));
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(long l) {
+        var bucket = find(table, l);
+        if (bucket instanceof LongBitSetBucket) {
+            return ((LongBitSetBucket) bucket).containsAtomic(l);
+        }
+        return bucket != null && bucket.contains(l);
+    }
+
+    @Override
+    public boolean add(long l) {
+        Table t = table;
+        outer:
+        for (; ; ) {
+            final Object[] slots = t.slots;
+            final int mask = slots.length - 1;
+            for (int i = index0(l, mask); ; ) {
+                final Object o = SLOTS.getAcquire(slots, i);
+                if (o == null) {
+                    if (!reserve(t)) {
+                        t = advance(t);
+                        continue outer;
+                    }
+                    var bucket = new LongBitHashBucket(l & ~255);
+                    bucket.add(l);
+                    if (SLOTS.compareAndSet(slots, i, null, bucket)) {
+                        size.increment();
+                        if (t.occupied >= t.threshold && t == table) grow(t);
+                        return true;
+                    }
+                    OCCUPIED.getAndAdd(t, -1);
+                    continue;
+                }
+                if (o instanceof Forward) {
+                    var f = (Forward) o;
+                    if (f.bucket == null || f.bucket.isRelative(l)) {
+                        t = help(t, f);
+                        continue outer;
+                    }
+                    i = (i + 1) & mask;
+                    continue;
+                }
+                var bucket = (LongBitBucket) o;
+                if (!bucket.isRelative(l)) {
+                    i = (i + 1) & mask;
+                    continue;
+                }
+                if (bucket instanceof LongBitSetBucket) {
+                    if (((LongBitSetBucket) bucket).addAtomic(l)) {
+                        size.increment();
+                        return true;
+                    }
+                    return false;
+                }
+                if (bucket.contains(l)) {
+                    return false;
+                }
+                if (SLOTS.compareAndSet(slots, i, o, add1(bucket, l))) {
+                    size.increment();
+                    return true;
+                }
+                // Lost the race, reread the slot.
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(long l) {
+        Table t = table;
+        outer:
+        for (; ; ) {
+            final Object[] slots = t.slots;
+            final int mask = slots.length - 1;
+            for (int i = index0(l, mask); ; ) {
+                final Object o = SLOTS.getAcquire(slots, i);
+                if (o == null) {
+                    return false;
+                }
+                if (o instanceof Forward) {
+                    var f = (Forward) o;
+                    if (f.bucket == null || f.bucket.isRelative(l)) {
+                        t = help(t, f);
+                        continue outer;
+                    }
+                    i = (i + 1) & mask;
+                    continue;
+                }
+                var bucket = (LongBitBucket) o;
+                if (!bucket.isRelative(l)) {
+                    i = (i + 1) & mask;
+                    continue;
+                }
+                if (bucket instanceof LongBitSetBucket) {
+                    if (((LongBitSetBucket) bucket).removeAtomic(l)) {
+                        size.decrement();
+                        return true;
+                    }
+                    return false;
+                }
+                if (!bucket.contains(l)) {
+                    return false;
+                }
+                var copy = bucket.copy();
+                copy.remove(l);
+                if (SLOTS.compareAndSet(slots, i, o, copy)) {
+                    size.decrement();
+                    return true;
+                }
+                // Lost the race, reread the slot.
+            }
+        }
+    }
+
+    /**
+     * Copies the hash bucket with the long added, converting to a {@link LongBitSetBucket} on overflow.
+     * The bucket given is left untouched as it may be visible to other threads.
+     */
+    private static LongBitBucket add1(LongBitBucket bucket, long l) {
+        LongBitBucket copy = bucket.copy();
+        if (!copy.add(l)) (copy = new LongBitSetBucket(bucket)).add(l);
+        return copy;
+    }
+
+    /**
+     * Finds the most recent bucket relative to the given long, following forwarding markers as required.
+     * This never writes, nor retries, and as such, is wait-free.
+     *
+     * @param t The directory to start from.
+     * @param l The long to base the bucket off of.
+     * @return The bucket relative to {@code l}, or null if there is none.
+     */
+    private static LongBitBucket find(Table t, long l) {
+        outer:
+        for (; ; ) {
+            final Object[] slots = t.slots;
+            final int mask = slots.length - 1;
+            for (int i = index0(l, mask); ; i = (i + 1) & mask) {
+                final Object o = SLOTS.getAcquire(slots, i);
+                if (o == null) {
+                    return null;
+                }
+                if (o instanceof Forward) {
+                    var f = (Forward) o;
+                    if (f.bucket == null) {
+                        t = f.next;
+                        continue outer;
+                    }
+                    if (f.bucket.isRelative(l)) {
+                        // The next directory may not have the bucket yet; the forwarded one is then still the latest.
+                        var bucket = find(f.next, l);
+                        return bucket != null ? bucket : f.bucket;
+                    }
+                } else if (((LongBitBucket) o).isRelative(l)) {
+                    return (LongBitBucket) o;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the most recent bucket from the slot's value.
+     */
+    private static LongBitBucket resolve(Object o) {
+        if (o instanceof Forward) {
+            var f = (Forward) o;
+            if (f.bucket == null) return null;
+            var bucket = find(f.next, f.bucket.relative());
+            return bucket != null ? bucket : f.bucket;
+        }
+        return (LongBitBucket) o;
+    }
+
+    /**
+     * Reserves room for a new bucket within the directory.
+     * <p>
+     * A directory that is still receiving buckets from its predecessor only hands out half of its slots,
+     * leaving the rest for the buckets that are yet to be moved over.
+     *
+     * @return true if a slot was reserved, false if the directory must advance first.
+     */
+    private boolean reserve(Table t) {
+        final int length = t.slots.length;
+        final int limit = t == table ? length - 1 : length >>> 1;
+        if ((int) OCCUPIED.getAndAdd(t, 1) < limit) {
+            return true;
+        }
+        OCCUPIED.getAndAdd(t, -1);
+        return false;
+    }
+
+    /**
+     * Ensures progress when the given directory cannot accept any more buckets.
+     *
+     * @param t The full directory.
+     * @return The directory to retry within.
+     * @throws IllegalStateException When the directory is already at its maximum capacity and full.
+     */
+    private Table advance(Table t) {
+        final Table current = table;
+        Forward moved;
+        if (current != t) {
+            // Either t is stale, or t is still receiving buckets from the current directory.
+            if (t.moved == null && (moved = current.moved) != null) sweep(current, moved);
+            return table;
+        }
+        if ((moved = resize(t, true)) == null) ise0(t.slots.length);
+        transfer(t, moved);
+        if (table == t) sweep(t, moved);
+        return table;
+    }
+
+    /**
+     * Starts growing the directory if it hasn't been already, then helps move buckets over.
+     */
+    private void grow(Table t) {
+        Forward moved;
+        if ((moved = resize(t, false)) != null) transfer(t, moved);
+    }
+
+    /**
+     * Helps move buckets over to the next directory, ensuring the forwarded bucket is present there before returning.
+     *
+     * @return The next directory.
+     */
+    private Table help(Table t, Forward f) {
+        Forward moved;
+        if ((moved = t.moved) != null) transfer(t, moved);
+        if (f.bucket != null) move(f.next, f.bucket);
+        return f.next;
+    }
+
+    /**
+     * Allocates the next directory, or fetches it if another thread already has.
+     * <p>
+     * Should the allocation fail, the claim is dropped before rethrowing, such that the waiting threads
+     * take over allocating rather than waiting on a directory that never comes.
+     *
+     * @param t    The directory to grow.
+     * @param wait Whether to wait on another thread allocating the next directory.
+     * @return The marker for empty slots of the directory, or null if there is no next directory.
+     */
+    private Forward resize(Table t, boolean wait) {
+        Forward moved;
+        do {
+            if ((moved = t.moved) != null || t.slots.length >= MAXIMUM_CAPACITY) {
+                return moved;
+            }
+            if (RESIZING.compareAndSet(t, 0, 1)) {
+                try {
+                    return t.moved = new Forward(null, new Table(slots0(t.slots.length << 1)));
+                } catch (RuntimeException | Error e) {
+                    RESIZING.setVolatile(t, 0);
+                    throw e;
+                }
+            }
+            Thread.onSpinWait();
+        } while (wait);
+        return null;
+    }
+
+    /**
+     * Allocates the slots of the next directory.
+     *
+     * @param length The length of the next directory.
+     */
+    Object[] slots0(int length) {
+        return new Object[length];
+    }
+
+    /**
+     * Claims and moves strides of slots until there are none left to claim. The directory is swapped
+     * by whichever thread finishes the last stride.
+     */
+    private void transfer(Table t, Forward moved) {
+        final int length = t.slots.length;
+        int hi, lo;
+        while ((hi = t.transferIndex) > 0) {
+            if (!TRANSFER_INDEX.compareAndSet(t, hi, lo = Math.max(hi - STRIDE, 0))) continue;
+            for (int i = lo; i < hi; i++) move(t, moved, i);
+            if ((int) TRANSFERRED.getAndAdd(t, hi - lo) + (hi - lo) == length) {
+                TABLE.compareAndSet(this, t, moved.next);
+            }
+        }
+    }
+
+    /**
+     * Moves every slot regardless of claims, then swaps the directory.
+     * <p>
+     * This is only used when a thread cannot otherwise continue, as it doesn't depend on
+     * other threads finishing their claimed strides.
+     */
+    private void sweep(Table t, Forward moved) {
+        for (int i = 0, l = t.slots.length; i < l; i++) move(t, moved, i);
+        TABLE.compareAndSet(this, t, moved.next);
+    }
+
+    /**
+     * Completes any growth in progress, returning a directory that has all buckets present.
+     */
+    private Table settle() {
+        Table t = table;
+        Forward moved;
+        while ((moved = t.moved) != null) {
+            sweep(t, moved);
+            t = moved.next;
+        }
+        return t;
+    }
+
+    /**
+     * Replaces the slot with a forwarding marker, then ensures the bucket is present in the next directory.
+     * This is idempotent, allowing multiple threads to move the same slot.
+     */
+    private static void move(Table t, Forward moved, int i) {
+        final Object[] slots = t.slots;
+        for (; ; ) {
+            final Object o = SLOTS.getAcquire(slots, i);
+            if (o == null) {
+                if (SLOTS.compareAndSet(slots, i, null, moved)) return;
+            } else if (o instanceof Forward) {
+                var f = (Forward) o;
+                if (f.bucket != null) move(moved.next, f.bucket);
+                return;
+            } else if (SLOTS.compareAndSet(slots, i, o, new Forward((LongBitBucket) o, moved.next))) {
+                move(moved.next, (LongBitBucket) o);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Inserts the bucket into the directory if its relative is not yet present.
+     */
+    private static void move(Table t, LongBitBucket bucket) {
+        final long relative = bucket.relative();
+        outer:
+        for (; ; ) {
+            final Object[] slots = t.slots;
+            final int mask = slots.length - 1;
+            for (int i = index0(relative, mask); ; ) {
+                final Object o = SLOTS.getAcquire(slots, i);
+                if (o == null) {
+                    OCCUPIED.getAndAdd(t, 1);
+                    if (SLOTS.compareAndSet(slots, i, null, bucket)) return;
+                    OCCUPIED.getAndAdd(t, -1);
+                    continue;
+                }
+                if (o instanceof Forward) {
+                    var f = (Forward) o;
+                    if (f.bucket == null) {
+                        t = f.next;
+                        continue outer;
+                    }
+                    if (f.bucket.isRelative(relative)) return;
+                } else if (((LongBitBucket) o).isRelative(relative)) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    @Contract("_ -> fail")
+    private static void ise0(int length) {
+        throw new IllegalStateException("Unable to grow the directory beyond " + length + " buckets.");
+    }
+
+    /**
+     * Fetches the hashed index from the given long.
+     */
+    private static int index0(long l, int mask) {
+        return (int) HashCommon.mix(l >>> 8) & mask;
+    }
+
+    /**
+     * An open-addressed directory of buckets, along with the state of growing into the next directory.
+     */
+    private static final class Table {
+        final Object[] slots;
+        final int threshold;
+        volatile int occupied;
+        volatile int resizing;
+        volatile int transferIndex;
+        volatile int transferred;
+        /**
+         * The marker for moved empty slots, set once the next directory has been allocated.
+         */
+        volatile Forward moved;
+
+        Table(Object[] slots) {
+            final int length = slots.length;
+            this.slots = slots;
+            this.threshold = HashCommon.maxFill(length, Hash.DEFAULT_LOAD_FACTOR);
+            this.transferIndex = length;
+        }
+    }
+
+    /**
+     * Marks a slot as moved into the next directory.
+     */
+    private static final class Forward {
+        /**
+         * The bucket as of being moved, or null if the slot was empty.
+         */
+        final LongBitBucket bucket;
+        final Table next;
+
+        Forward(LongBitBucket bucket, Table next) {
+            this.bucket = bucket;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Weakly consistent iterator, copying out a bucket at a time.
+     */
+    class j$itr implements LongIterator {
+        private final Object[] slots;
+        private final long[] longs = new long[256];
+        private final long[] words = new long[4];
+        private int slot = -1, index, count;
+        private long last;
+        private boolean removable;
+
+        j$itr(Table table) {
+            this.slots = table.slots;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index >= count) {
+                if (slot + 1 >= slots.length) {
+                    slot = slots.length;
+                    return false;
+                }
+                count = fill(resolve(SLOTS.getAcquire(slots, ++slot)));
+                index = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            removable = true;
+            return last = longs[index++];
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            ConcurrentLongBitHashSet.this.remove(last);
+        }
+
+        private int fill(LongBitBucket bucket) {
+            int c = 0;
+            if (bucket instanceof LongBitSetBucket) {
+                final long relative = bucket.relative();
+                ((LongBitSetBucket) bucket).snapshotAtomic(words);
+                for (int w = 0; w < 4; w++) {
+                    for (long word = words[w]; word != 0; word &= word - 1) {
+                        longs[c++] = relative | w << 6 | Long.numberOfTrailingZeros(word);
+                    }
+                }
+            } else if (bucket != null) {
+                for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) longs[c++] = bucket.rawGet(i);
+            }
+            return c;
+        }
+    }
+}
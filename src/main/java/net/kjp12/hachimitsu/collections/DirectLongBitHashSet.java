@@ -0,0 +1,611 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T13:10:37
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.Size64;
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.TestOnly;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * An off-heap long set based around buckets of bits, stored in direct {@link ByteBuffer}s.
+ * <p>
+ * The directory is a single buffer of 16 byte slots, each holding the {@link LongBitBucket#relative() relative}
+ * of the bucket tagged within its low byte, followed by a payload, linearly probed by the mixed relative.
+ * A bucket of up to 8 longs keeps their low bytes inline within the payload, as a {@link LongBitHashBucket} would,
+ * while a denser bucket points its payload at the 4 words of a {@link LongBitSetBucket} within a second buffer,
+ * the slab. As there are no per-bucket objects nor array headers, the set costs the garbage collector
+ * two objects regardless of size.
+ * <p>
+ * At the default load factor, a sparse long costs about 21 bytes, being a slot to itself, while a dense bucket
+ * costs about 53 bytes for up to 256 longs. Buckets emptied by removal are reclaimed, and bitsets sparse enough
+ * are moved back inline, as the directory is next rehashed. The directory is capped at {@code 1 << 26} slots,
+ * or about 50 million buckets, thus holding at most about 400 million sparse longs or 12 billion dense longs.
+ * <p>
+ * The memory is held until {@link #close()} is called, after which the set can no longer be used.
+ * The buffers are freed immediately through {@code sun.misc.Unsafe} of the {@code jdk.unsupported} module;
+ * should that be unavailable, {@link #close()}, {@link #clear()} and growing leave the old buffers to the
+ * garbage collector instead, in which case {@link #freesEagerly()} returns false.
+ * <p>
+ * At its maximum capacity, the set holds more longs than an int can count. {@link #size()} saturates
+ * at {@link Integer#MAX_VALUE}, while {@link #size64()} gives the exact amount.
+ *
+ * @author KJP12
+ * @see LongBitHashSet
+ * @since ${version}
+ **/
+public class DirectLongBitHashSet extends AbstractLongSet implements LongSet, Size64, AutoCloseable {
+    /**
+     * The size of a slot in bytes: the relative and tag, then the payload.
+     */
+    private static final int SLOT = 16;
+    /**
+     * The size of a bitset within the slab in bytes.
+     */
+    private static final int BITSET = 32;
+    /**
+     * The tag of a slot whose payload is the index of its bitset within the slab.
+     * Any other tag is 1 more than the amount of low bytes held inline within the payload.
+     */
+    private static final int DENSE = 255;
+    /**
+     * The most low bytes held inline within a payload.
+     */
+    private static final int INLINE = 8;
+    /**
+     * The largest the directory is allowed to grow to while still being addressable by a single buffer.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 26;
+    /**
+     * The most bitsets addressable by a single buffer.
+     */
+    private static final int MAXIMUM_BITSETS = Integer.MAX_VALUE / BITSET;
+    private static final long ONES = 0x0101010101010101L, HIGHS = 0x8080808080808080L;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            var klass = Class.forName("sun.misc.Unsafe");
+            var field = klass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = klass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // Falls back onto the garbage collector freeing the buffer, as documented by freesEagerly().
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private long size;
+    private int occupied;
+    private int threshold;
+    private int capacity;
+    private ByteBuffer buffer;
+    /**
+     * The bitsets of the dense buckets, lazily allocated on the first one.
+     */
+    private ByteBuffer slab;
+    /**
+     * The amount of bitsets ever handed out from {@link #slab}, including the freed ones.
+     */
+    private int bitsets;
+    /**
+     * The index of the first freed bitset, each holding the index of the next in its first word, or -1 if none.
+     */
+    private int free = -1;
+
+    public DirectLongBitHashSet() {
+        allocate(8);
+    }
+
+    /**
+     * Whether the buffers are freed as soon as they're released, rather than once the garbage collector
+     * gets to them. This is only false when {@code sun.misc.Unsafe} is inaccessible, such as when the
+     * {@code jdk.unsupported} module is absent from the runtime.
+     *
+     * @return true if {@link #close()}, {@link #clear()} and growing free the released buffers immediately.
+     */
+    public static boolean freesEagerly() {
+        return INVOKE_CLEANER != null;
+    }
+
+    /**
+     * @return The amount of longs within the set, saturating at {@link Integer#MAX_VALUE}.
+     * @see #size64()
+     */
+    @Override
+    @SuppressWarnings("deprecation") // Only deprecated by Size64 in favour of size64(), still required of a Set.
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long size64() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public LongIterator iterator() {
+        ensureOpen();
+        return new j$itr();
+    }
+
+    /**
+     * Clears the set, releasing the directory back down to its initial size and releasing the slab.
+     */
+    @Override
+    public void clear() {
+        ensureOpen();
+        free(buffer);
+        allocate(8);
+        release0();
+        size = 0;
+        occupied = 0;
+    }
+
+    @Override
+    public boolean add(long l) {
+        int offset;
+        if ((offset = find(l)) < 0) {
+            if (occupied >= threshold) {
+                grow0();
+                offset = find(l);
+            }
+            buffer.putLong(offset = ~offset, l & ~255 | 2);
+            buffer.putLong(offset + 8, l & 255);
+            occupied++;
+            size++;
+            return true;
+        }
+        final ByteBuffer buffer = this.buffer;
+        final long k = buffer.getLong(offset), payload = buffer.getLong(offset + 8);
+        final int tag = (int) k & 255;
+        if (tag == DENSE) {
+            final ByteBuffer slab = this.slab;
+            final int word = word(payload, l);
+            final long w = slab.getLong(word), b = 1L << l;
+            if ((w & b) != 0) {
+                return false;
+            }
+            slab.putLong(word, w | b);
+        } else {
+            final int n = tag - 1;
+            if (indexOf(payload, n, l) >= 0) {
+                return false;
+            }
+            if (n < INLINE) {
+                buffer.putLong(offset, k + 1);
+                buffer.putLong(offset + 8, payload | (l & 255) << (n << 3));
+            } else {
+                promote0(offset, k, payload, l);
+            }
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(long l) {
+        final int offset = find(l);
+        if (offset < 0) {
+            return false;
+        }
+        final ByteBuffer buffer = this.buffer;
+        final int tag = (int) buffer.getLong(offset) & 255;
+        final long payload = buffer.getLong(offset + 8);
+        return tag == DENSE ? (slab.getLong(word(payload, l)) & 1L << l) != 0 : indexOf(payload, tag - 1, l) >= 0;
+    }
+
+    @Override
+    public boolean remove(long l) {
+        final int offset = find(l);
+        if (offset < 0) {
+            return false;
+        }
+        final ByteBuffer buffer = this.buffer;
+        final long k = buffer.getLong(offset), payload = buffer.getLong(offset + 8);
+        final int tag = (int) k & 255;
+        if (tag == DENSE) {
+            final ByteBuffer slab = this.slab;
+            final int word = word(payload, l);
+            final long w = slab.getLong(word), b = 1L << l;
+            if ((w & b) == 0) {
+                return false;
+            }
+            slab.putLong(word, w & ~b);
+        } else {
+            final int i = indexOf(payload, tag - 1, l);
+            if (i < 0) {
+                return false;
+            }
+            // Moves the last low byte into the removed one's place, keeping the inline bytes packed.
+            final int s = i << 3, t = tag - 2 << 3;
+            buffer.putLong(offset, k - 1);
+            buffer.putLong(offset + 8, (payload & ~(255L << s) | (payload >>> t & 255) << s) & ~(255L << t));
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Frees the underlying memory. Any further use of the set will throw {@link IllegalStateException}.
+     * <p>
+     * Should {@link #freesEagerly()} be false, the memory is instead freed once the garbage collector
+     * collects the buffers.
+     */
+    @Override
+    public void close() {
+        var buffer = this.buffer;
+        if (buffer != null) {
+            this.buffer = null;
+            size = 0;
+            free(buffer);
+            release0();
+        }
+    }
+
+    /**
+     * Probes the directory for the slot relative to the given long.
+     *
+     * @param l The long to base the slot off of.
+     * @return The offset of the slot, or the complement of the offset of the free slot to insert at.
+     */
+    private int find(long l) {
+        final ByteBuffer buffer = ensureOpen();
+        final long relative = l & ~255;
+        final int mask = capacity - 1;
+        long k;
+        for (int i = index0(l, mask); ; i = (i + 1) & mask) {
+            final int offset = i * SLOT;
+            if ((k = buffer.getLong(offset)) == 0) return ~offset;
+            if ((k & ~255) == relative) return offset;
+        }
+    }
+
+    /**
+     * Moves the full inline bytes of the slot and the given long into a bitset within the slab.
+     */
+    private void promote0(int offset, long k, long payload, long l) {
+        final int index = bitset0();
+        final ByteBuffer slab = this.slab;
+        final int at = index * BITSET;
+        slab.putLong(at, 0L).putLong(at + 8, 0L).putLong(at + 16, 0L).putLong(at + 24, 0L);
+        int word;
+        for (int i = 0; i < INLINE; i++) {
+            word = word(index, payload >>> (i << 3));
+            slab.putLong(word, slab.getLong(word) | 1L << (payload >>> (i << 3)));
+        }
+        word = word(index, l);
+        slab.putLong(word, slab.getLong(word) | 1L << l);
+        buffer.putLong(offset, k | DENSE);
+        buffer.putLong(offset + 8, index);
+    }
+
+    /**
+     * Fetches a bitset from the slab, reusing a freed one if any, else growing the slab as needed.
+     * The bitset's contents are undefined.
+     *
+     * @return The index of the bitset.
+     * @throws IllegalStateException When the slab is already at its maximum capacity and full.
+     */
+    private int bitset0() {
+        int index;
+        if ((index = free) >= 0) {
+            free = (int) slab.getLong(index * BITSET);
+            return index;
+        }
+        final ByteBuffer old = slab;
+        final int length = old == null ? 0 : old.capacity() / BITSET;
+        if ((index = bitsets) >= length) {
+            if (length >= MAXIMUM_BITSETS) ise0(length);
+            final int grown = Math.min(Math.max(8, length << 1), MAXIMUM_BITSETS);
+            final ByteBuffer slab = ByteBuffer.allocateDirect(grown * BITSET).order(ByteOrder.nativeOrder());
+            if (old != null) {
+                slab.duplicate().put(old.duplicate().clear());
+                free(old);
+            }
+            this.slab = slab;
+        }
+        bitsets++;
+        return index;
+    }
+
+    /**
+     * Returns the bitset to the slab for reuse.
+     */
+    private void free0(int index) {
+        slab.putLong(index * BITSET, free);
+        free = index;
+    }
+
+    /**
+     * Releases the slab entirely.
+     */
+    private void release0() {
+        var slab = this.slab;
+        if (slab != null) {
+            this.slab = null;
+            free(slab);
+        }
+        bitsets = 0;
+        free = -1;
+    }
+
+    /**
+     * Doubles the directory, rehashing the live slots into a new buffer.
+     * Rehashes in place instead once emptied slots make up half of the directory's allowance.
+     *
+     * @throws IllegalStateException When the directory is already at its maximum capacity and full.
+     */
+    private void grow0() {
+        final int length = capacity;
+        if (length >= MAXIMUM_CAPACITY) {
+            if (occupied >= length - 1) {
+                if (live0() >= occupied) ise0(length);
+                rehash0(length);
+            }
+            return;
+        }
+        rehash0(live0() <= threshold >>> 1 ? length : length << 1);
+    }
+
+    /**
+     * Rehashes the non-empty slots into a directory of the given length, freeing the bitsets of empty buckets
+     * and moving those of sparse buckets back inline.
+     */
+    private void rehash0(int length) {
+        final ByteBuffer old = buffer;
+        final int from = capacity;
+        allocate(length);
+        final ByteBuffer buffer = this.buffer;
+        final int mask = length - 1;
+        int n = 0;
+        long k, payload;
+        for (int i = 0; i < from; i++) {
+            final int offset = i * SLOT;
+            if ((k = old.getLong(offset)) == 0) continue;
+            payload = old.getLong(offset + 8);
+            final int count = count0(k, payload);
+            if (((int) k & 255) == DENSE && count <= INLINE) {
+                final int index = (int) payload;
+                payload = inline0(index);
+                free0(index);
+                k = k & ~255 | count + 1;
+            }
+            if (count == 0) continue;
+            int j = index0(k, mask);
+            while (buffer.getLong(j * SLOT) != 0) j = (j + 1) & mask;
+            buffer.putLong(j * SLOT, k);
+            buffer.putLong(j * SLOT + 8, payload);
+            n++;
+        }
+        occupied = n;
+        free(old);
+    }
+
+    /**
+     * Counts the non-empty slots within the directory.
+     */
+    private int live0() {
+        final ByteBuffer buffer = this.buffer;
+        final int capacity = this.capacity;
+        int n = 0;
+        long k;
+        for (int i = 0; i < capacity; i++) {
+            final int offset = i * SLOT;
+            if ((k = buffer.getLong(offset)) != 0 && count0(k, buffer.getLong(offset + 8)) != 0) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Counts the longs within the slot of the given key and payload.
+     */
+    private int count0(long k, long payload) {
+        final int tag = (int) k & 255;
+        if (tag != DENSE) return tag - 1;
+        final ByteBuffer slab = this.slab;
+        final int at = (int) payload * BITSET;
+        return Long.bitCount(slab.getLong(at)) + Long.bitCount(slab.getLong(at + 8))
+                + Long.bitCount(slab.getLong(at + 16)) + Long.bitCount(slab.getLong(at + 24));
+    }
+
+    /**
+     * Packs the set bits of the bitset into low bytes in ascending order. The bitset must have at most 8 set.
+     */
+    private long inline0(int index) {
+        final ByteBuffer slab = this.slab;
+        long payload = 0L, w;
+        int n = 0;
+        for (int i = 0; i < 4; i++) {
+            for (w = slab.getLong(index * BITSET + (i << 3)); w != 0; w &= w - 1) {
+                payload |= (long) (i << 6 | Long.numberOfTrailingZeros(w)) << (n++ << 3);
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Loads the bucket of the given key and payload into 4 words.
+     */
+    private void words0(long k, long payload, long[] words) {
+        final int tag = (int) k & 255;
+        if (tag == DENSE) {
+            final ByteBuffer slab = this.slab;
+            final int at = (int) payload * BITSET;
+            for (int i = 0; i < 4; i++) words[i] = slab.getLong(at + (i << 3));
+            return;
+        }
+        words[0] = words[1] = words[2] = words[3] = 0L;
+        long b;
+        for (int i = 0; i < tag - 1; i++) {
+            b = payload >>> (i << 3);
+            words[(int) b >>> 6 & 3] |= 1L << b;
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity * SLOT).order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+        this.threshold = HashCommon.maxFill(capacity, Hash.DEFAULT_LOAD_FACTOR);
+    }
+
+    private ByteBuffer ensureOpen() {
+        final ByteBuffer buffer;
+        if ((buffer = this.buffer) == null) ise1();
+        return buffer;
+    }
+
+    /**
+     * The bytes currently held by the directory and the slab.
+     */
+    @TestOnly
+    long footprint() {
+        ensureOpen();
+        return (long) capacity * SLOT + (slab == null ? 0 : slab.capacity());
+    }
+
+    /**
+     * Frees the direct buffer immediately if possible, else leaves it to the garbage collector.
+     *
+     * @see #freesEagerly()
+     */
+    private static void free(ByteBuffer buffer) {
+        if (INVOKE_CLEANER != null) try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException ignored) {
+            // The garbage collector will free it regardless.
+        }
+    }
+
+    /**
+     * Finds the index of the long's low byte among the first {@code n} low bytes held inline.
+     * The bytes past {@code n} are forced to mismatch, then the first zero byte of the difference
+     * is found a word at a time.
+     *
+     * @return The index of the low byte, or -1 if absent.
+     */
+    private static int indexOf(long payload, int n, long l) {
+        final long x = payload ^ (l & 255) * ONES | (n == INLINE ? 0L : -1L << (n << 3));
+        final long t = (x - ONES) & ~x & HIGHS;
+        return t == 0 ? -1 : Long.numberOfTrailingZeros(t) >>> 3;
+    }
+
+    @Contract("_ -> fail")
+    private static void ise0(int length) {
+        throw new IllegalStateException("Unable to grow beyond " + length + " slots.");
+    }
+
+    @Contract("-> fail")
+    private static void ise1() {
+        throw new IllegalStateException("The set has been closed.");
+    }
+
+    /**
+     * Fetches the offset of the word holding the long within the slab.
+     *
+     * @param index The index of the bitset within the slab.
+     */
+    private static int word(long index, long l) {
+        return (int) index * BITSET + ((int) (l >>> 3) & 24);
+    }
+
+    /**
+     * Fetches the hashed index from the given long.
+     */
+    private static int index0(long l, int mask) {
+        return (int) HashCommon.mix(l >>> 8) & mask;
+    }
+
+    /**
+     * Long iterator walking the slots in directory order.
+     * <p>
+     * The directory is captured on creation, as the slots are only meaningful within the layout they were read from.
+     * Once the set is closed this throws {@link IllegalStateException}, and once it's rehashed or cleared into a new
+     * buffer, {@link ConcurrentModificationException}. Each bucket is copied out on reaching it.
+     */
+    class j$itr implements LongIterator {
+        private final ByteBuffer buffer = ensureOpen();
+        private final int capacity = DirectLongBitHashSet.this.capacity;
+        private final long[] words = new long[4];
+        private int slot = -1, word = 4;
+        private long relative, bits, last;
+        private boolean removable;
+
+        @Override
+        public boolean hasNext() {
+            final ByteBuffer buffer = buffer();
+            while (bits == 0) {
+                if (++word >= 4) {
+                    if (!nextSlot(buffer)) return false;
+                    word = 0;
+                }
+                bits = words[word];
+            }
+            return true;
+        }
+
+        /**
+         * Fetches the captured buffer, failing if the set has since been closed or moved into a new buffer.
+         */
+        private ByteBuffer buffer() {
+            if (ensureOpen() != buffer) {
+                throw new ConcurrentModificationException();
+            }
+            return buffer;
+        }
+
+        private boolean nextSlot(ByteBuffer buffer) {
+            final int capacity = this.capacity;
+            long k;
+            while (++slot < capacity) {
+                final int offset = slot * SLOT;
+                if ((k = buffer.getLong(offset)) != 0) {
+                    relative = k & ~255;
+                    words0(k, buffer.getLong(offset + 8), words);
+                    return true;
+                }
+            }
+            slot = capacity;
+            word = 4;
+            return false;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final long b = bits;
+            bits = b & b - 1;
+            removable = true;
+            return last = relative | word << 6 | Long.numberOfTrailingZeros(b);
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            DirectLongBitHashSet.this.remove(last);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T19:52:18
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * An immutable long set in a compact, read-optimised layout, as created by {@link LongBitHashSet#freeze()}.
+ * <p>
+ * The relatives of the buckets are packed into a sorted array, alongside the offsets of each bucket into two pools.
+ * Buckets holding at least a sixteenth of their span are packed as bitsets of 4, 64 or 1024 words depending on the
+ * {@link LongBitHashSet.Span span}, while sparser buckets are packed as their sorted low bits at a char each.
+ * There are no per-bucket objects nor spare slots; a bucket costs 16 bytes plus either its bitset or 2 bytes per long,
+ * whichever is smaller. Testing for a long is a binary search of the relatives followed by either a single word test
+ * or a binary search of the bucket's keys.
+ * <p>
+ * Iteration is in signed order.
+ *
+ * @author KJP12
+ * @see LongBitHashSet#freeze()
+ * @since ${version}
+ **/
+public final class FrozenLongBitHashSet extends AbstractLongSet implements LongSet {
+    private final long[] relatives;
+    /**
+     * The amount of bitsets before each bucket in the upper 32 bits, and the amount of keys in the lower 32 bits,
+     * with one trailing entry. A bucket is a bitset when the amount of bitsets differs from the next entry.
+     */
+    private final long[] offsets;
+    private final long[] words;
+    private final char[] keys;
+    private final int size;
+    /**
+     * The amount of low bits held by each relative.
+     */
+    private final int shift;
+
+    /**
+     * @param relatives The relatives of the buckets in signed order.
+     * @param offsets   The offsets of the buckets into {@code words} and {@code keys}, in the same order.
+     * @param words     The bitsets of the dense buckets, {@code 1 << shift - 6} words each.
+     * @param keys      The low bits of the sparse buckets, sorted within each bucket.
+     * @param size      The amount of longs within the buckets.
+     * @param shift     The amount of low bits held by each relative.
+     */
+    FrozenLongBitHashSet(long[] relatives, long[] offsets, long[] words, char[] keys, int size, int shift) {
+        this.relatives = relatives;
+        this.offsets = offsets;
+        this.words = words;
+        this.keys = keys;
+        this.size = size;
+        this.shift = shift;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(long l) {
+        final int i = Arrays.binarySearch(relatives, l & -1L << shift);
+        if (i < 0) return false;
+        final long from = offsets[i], to = offsets[i + 1];
+        final int s = shift - 6, d = (int) (from >>> 32);
+        if (d != (int) (to >>> 32)) {
+            return (words[d << s | (int) (l >>> 6) & ~(-1 << s)] & 1L << l) != 0;
+        }
+        return Arrays.binarySearch(keys, (int) from, (int) to, (char) (l & ~(-1L << shift))) >= 0;
+    }
+
+    @Override
+    public LongIterator iterator() {
+        return new j$itr();
+    }
+
+    @Override
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action);
+        final long[] relatives = this.relatives, offsets = this.offsets, words = this.words;
+        final char[] keys = this.keys;
+        final int s = shift - 6;
+        long from = offsets[0], to, relative, w;
+        for (int i = 0; i < relatives.length; i++, from = to) {
+            to = offsets[i + 1];
+            relative = relatives[i];
+            final int d = (int) (from >>> 32);
+            if (d != (int) (to >>> 32)) {
+                for (int j = 0; j < 1 << s; j++) {
+                    for (w = words[d << s | j]; w != 0; w &= w - 1) {
+                        action.accept(relative | j << 6 | Long.numberOfTrailingZeros(w));
+                    }
+                }
+            } else {
+                for (int j = (int) from; j < (int) to; j++) action.accept(relative | keys[j]);
+            }
+        }
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, as the set is immutable.
+     */
+    @Override
+    public boolean add(long l) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, as the set is immutable.
+     */
+    @Override
+    public boolean remove(long l) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @throws UnsupportedOperationException Always, as the set is immutable.
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Long iterator walking the buckets in order, popping the set bits word by word of the bitsets
+     * and reading the keys of the sparse buckets as is.
+     */
+    class j$itr implements LongIterator {
+        private int bucket = -1, index, end, base;
+        private long relative, bits;
+        private boolean dense;
+
+        @Override
+        public boolean hasNext() {
+            for (; ; ) {
+                if (dense) {
+                    while (bits == 0 && ++index < end) bits = words[index];
+                    if (bits != 0) return true;
+                } else if (index < end) {
+                    return true;
+                }
+                if (!nextBucket()) return false;
+            }
+        }
+
+        private boolean nextBucket() {
+            if (bucket + 1 >= relatives.length) {
+                bucket = relatives.length;
+                dense = false;
+                return false;
+            }
+            final long from = offsets[++bucket], to = offsets[bucket + 1];
+            final int s = shift - 6, d = (int) (from >>> 32);
+            relative = relatives[bucket];
+            if (dense = d != (int) (to >>> 32)) {
+                base = d << s;
+                index = base - 1;
+                end = base + (1 << s);
+            } else {
+                index = (int) from;
+                end = (int) to;
+            }
+            return true;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (!dense) return relative | keys[index++];
+            final long b = bits;
+            bits = b & b - 1;
+            return relative | index - base << 6 | Long.numberOfTrailingZeros(b);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T22:48:53
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.AbstractIntSet;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jetbrains.annotations.Contract;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * An int set based around the same buckets of hash-keys and bits as {@link LongBitHashSet}.
+ * <p>
+ * The relatives are held as ints within a primitive array parallel to the buckets, marked as occupied by
+ * the least significant bit, such that probing the directory never dereferences a bucket until the relative
+ * matches. As an int only has a 24-bit high part, the directory is capped at twice the amount of relatives
+ * possible, and can therefore never fill up.
+ * <p>
+ * Only the directory is specialised for ints. The buckets are those of {@link LongBitHashSet} as is, with each int
+ * widened on the way in and narrowed on the way out, which is free on a 64-bit JVM. The cost is in memory instead,
+ * as each bucket keeps its long relative and the reference count this set never shares, being 8 bytes per bucket
+ * over an int-specialised copy once aligned; about a tenth of a hash or bitset bucket.
+ *
+ * @author KJP12
+ * @see LongBitHashSet
+ * @since ${version}
+ **/
+public class IntBitHashSet extends AbstractIntSet implements IntSet {
+    /**
+     * The largest the directory is allowed to grow to, fitting every possible relative.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 25;
+    private int size;
+    /**
+     * The amount of occupied slots within {@link #relatives}.
+     */
+    private int occupied;
+    /**
+     * The amount of occupied slots allowed before the directory must be grown.
+     */
+    private int threshold;
+    /**
+     * Open-addressed directory of relatives, each {@code | 1} to mark the slot as occupied,
+     * linearly probed by the mixed relative.
+     */
+    private int[] relatives;
+    /**
+     * The buckets, at the same slot as their relative within {@link #relatives}.
+     */
+    private LongBitBucket[] buckets;
+
+    public IntBitHashSet() {
+        allocate(8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears the set, releasing the directory back down to its initial size.
+     */
+    @Override
+    public void clear() {
+        allocate(8);
+        size = 0;
+        occupied = 0;
+    }
+
+    @Override
+    public IntIterator iterator() {
+        return isEmpty() ? IntIterators.EMPTY_ITERATOR : new j$itr();
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        Objects.requireNonNull(action);
+        final LongConsumer consumer = l -> action.accept((int) l);
+        for (var bucket : buckets) {
+            if (bucket != null) bucket.forEach(consumer);
+        }
+    }
+
+    @Override
+    public boolean add(int k) {
+        int slot;
+        if ((slot = find(k)) < 0) {
+            if (occupied >= threshold) {
+                grow0();
+                slot = find(k);
+            }
+            slot = ~slot;
+            relatives[slot] = k & ~255 | 1;
+            buckets[slot] = new LongBitHashBucket(k & ~255);
+            occupied++;
+        }
+        LongBitBucket bucket;
+        if (!(bucket = buckets[slot]).add(k)) {
+            if (bucket.contains(k)) return false;
+            (bucket = promote(slot, bucket)).add(k);
+        }
+        if (bucket.size() == 256 && !(bucket instanceof LongBitFullBucket)) {
+            buckets[slot] = new LongBitFullBucket(bucket.relative());
+        }
+        size++;
+        return true;
+    }
+
+    @Override
+    public boolean contains(int k) {
+        final int slot = find(k);
+        return slot >= 0 && buckets[slot].contains(k);
+    }
+
+    @Override
+    public boolean remove(int k) {
+        final int slot = find(k);
+        final LongBitBucket bucket;
+        if (slot >= 0 && ((bucket = buckets[slot]).remove(k) || bucket.contains(k) && promote(slot, bucket).remove(k))) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Converts the bucket into a more general bucket within the directory.
+     *
+     * @see LongBitBucket#promote()
+     */
+    private LongBitBucket promote(int slot, LongBitBucket bucket) {
+        return buckets[slot] = bucket.promote();
+    }
+
+    /**
+     * Probes the directory for the relative of the given int.
+     *
+     * @return The slot of the relative, or the complement of the free slot to insert it at.
+     */
+    private int find(int k) {
+        final int[] relatives = this.relatives;
+        final int mask = relatives.length - 1, key = k & ~255 | 1;
+        int r, i = slot0(k, mask);
+        for (; (r = relatives[i]) != 0; i = (i + 1) & mask) {
+            if (r == key) return i;
+        }
+        return ~i;
+    }
+
+    /**
+     * Doubles the directory, or rehashes in place once empty buckets make up half of the directory's allowance.
+     *
+     * @throws IllegalStateException When the directory is already at its maximum capacity and full.
+     */
+    private void grow0() {
+        final int length = relatives.length;
+        if (length >= MAXIMUM_CAPACITY) {
+            if (occupied >= length - 1) {
+                if (live0() >= occupied) ise0(length);
+                rehash0(length);
+            }
+            return;
+        }
+        rehash0(live0() <= threshold >>> 1 ? length : length << 1);
+    }
+
+    /**
+     * Rehashes the non-empty buckets into a directory of the given length, demoting them where possible.
+     *
+     * @see LongBitBucket#demote()
+     */
+    private void rehash0(int length) {
+        final int[] from = relatives;
+        final LongBitBucket[] buckets = this.buckets;
+        allocate(length);
+        final int[] to = relatives;
+        final int mask = length - 1;
+        LongBitBucket bucket;
+        int r, n = 0;
+        for (int i = 0; i < from.length; i++) {
+            if ((r = from[i]) == 0 || (bucket = buckets[i]).size() == 0) continue;
+            int j = slot0(r, mask);
+            while (to[j] != 0) j = (j + 1) & mask;
+            to[j] = r;
+            this.buckets[j] = bucket.demote();
+            n++;
+        }
+        occupied = n;
+    }
+
+    /**
+     * Counts the non-empty buckets within the directory.
+     */
+    private int live0() {
+        int n = 0;
+        for (var bucket : buckets) {
+            if (bucket != null && bucket.size() != 0) n++;
+        }
+        return n;
+    }
+
+    private void allocate(int length) {
+        this.relatives = new int[length];
+        this.buckets = new LongBitBucket[length];
+        this.threshold = HashCommon.maxFill(length, Hash.DEFAULT_LOAD_FACTOR);
+    }
+
+    @Contract("_ -> fail")
+    private static void ise0(int length) {
+        throw new IllegalStateException("Unable to grow the directory beyond " + length + " buckets.");
+    }
+
+    /**
+     * Fetches the hashed slot from the given int.
+     */
+    private static int slot0(int k, int mask) {
+        return HashCommon.mix(k >>> 8) & mask;
+    }
+
+    /**
+     * Int iterator walking the buckets in directory order.
+     */
+    class j$itr implements IntIterator {
+        private final LongBitBucket[] buckets = IntBitHashSet.this.buckets;
+        private LongBitBucket bucket;
+        private int slot = -1, cursor = -1, next = -1, last;
+        private boolean removable;
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) return true;
+            final LongBitBucket[] buckets = this.buckets;
+            for (LongBitBucket bucket = this.bucket; ; ) {
+                if (bucket != null && (next = bucket.nextIndex(cursor)) >= 0) return true;
+                if (++slot >= buckets.length) {
+                    slot = buckets.length;
+                    return false;
+                }
+                this.bucket = bucket = buckets[slot];
+                cursor = -1;
+            }
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int i = cursor = next;
+            next = -1;
+            removable = true;
+            return last = (int) bucket.rawGet(i);
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            IntBitHashSet.this.remove(last);
+        }
+    }
+}
@@ -0,0 +1,506 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T21:04:12
+
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.AbstractLong2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.objects.AbstractObjectSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import it.unimi.dsi.fastutil.objects.ObjectSet;
+import org.jetbrains.annotations.Contract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A long-keyed map based around the same buckets of hash-keys and bits as {@link LongBitHashSet}.
+ * <p>
+ * Every bucket of keys carries an array of values alongside it within the directory. A {@link LongBitHashBucket}
+ * indexes its values by the slot of the key within the hash array, while a {@link LongBitSetBucket} indexes its
+ * values by the rank of the key within the bitset, only allocating room for as many values as there are keys.
+ * <p>
+ * Entries remain valid until the next put of an absent key or removal within the same bucket.
+ * <p>
+ * The map serializes its buckets in the raw structure of {@link LongBitHashSet#write(DataOutput)},
+ * each followed by its values in the order of its keys.
+ *
+ * @param <V> The type of the values.
+ * @author KJP12
+ * @see Long2IntBitHashMap
+ * @see LongBitHashSet
+ * @since ${version}
+ **/
+public class Long2ObjectBitHashMap<V> extends AbstractLong2ObjectMap<V> implements Long2ObjectMap<V> {
+    /**
+     * The largest the directory is allowed to grow to.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final long serialVersionUID = 0L;
+    private int size;
+    /**
+     * The amount of non-null slots within {@link #buckets}.
+     */
+    private transient int occupied;
+    /**
+     * The amount of occupied slots allowed before {@link #buckets} must be grown.
+     */
+    private transient int threshold;
+    /**
+     * Open-addressed directory of buckets, linearly probed by the mixed {@link LongBitBucket#relative() relative}.
+     * Only ever holds {@link LongBitHashBucket hash} and {@link LongBitSetBucket bitset} buckets.
+     */
+    private transient LongBitBucket[] buckets;
+    /**
+     * The values of every bucket, at the same slot as the bucket within {@link #buckets}.
+     */
+    private transient Object[][] values;
+
+    public Long2ObjectBitHashMap() {
+        allocate(8);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Clears the map, releasing the directory back down to its initial size.
+     */
+    @Override
+    public void clear() {
+        allocate(8);
+        size = 0;
+        occupied = 0;
+    }
+
+    @Override
+    public boolean containsKey(long k) {
+        final int slot = find(k);
+        return slot >= 0 && buckets[slot].contains(k);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(long k) {
+        final int slot = find(k);
+        final LongBitBucket bucket;
+        return slot >= 0 && (bucket = buckets[slot]).contains(k) ? (V) values[slot][index0(bucket, k)] : defRetValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(long k, V v) {
+        final int slot = fetch(k);
+        final LongBitBucket bucket = buckets[slot];
+        if (bucket.contains(k)) {
+            final Object[] values = this.values[slot];
+            final int i = index0(bucket, k);
+            final V old = (V) values[i];
+            values[i] = v;
+            return old;
+        }
+        final int i = insert0(slot, bucket, k);
+        values[slot][i] = v;
+        size++;
+        return defRetValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(long k) {
+        final int slot = find(k);
+        final LongBitBucket bucket;
+        if (slot < 0 || !(bucket = buckets[slot]).contains(k)) return defRetValue;
+        final Object[] values = this.values[slot];
+        final int i = index0(bucket, k);
+        final V old = (V) values[i];
+        if (bucket instanceof LongBitSetBucket) {
+            final int n = bucket.size() - 1;
+            System.arraycopy(values, i + 1, values, i, n - i);
+            values[n] = null;
+        } else {
+            values[i] = null;
+        }
+        bucket.remove(k);
+        size--;
+        return old;
+    }
+
+    @Override
+    public ObjectSet<Long2ObjectMap.Entry<V>> long2ObjectEntrySet() {
+        return new j$entries();
+    }
+
+    /**
+     * Adds the absent key into the bucket at the given slot, converting the bucket and moving its values as required.
+     *
+     * @return The index of the key within the values of the bucket.
+     */
+    private int insert0(int slot, LongBitBucket bucket, long k) {
+        if (bucket instanceof LongBitHashBucket) {
+            final byte[] keys = ((LongBitHashBucket) bucket).keys;
+            if (bucket.add(k)) {
+                final byte[] resized = ((LongBitHashBucket) bucket).keys;
+                if (resized != keys) values[slot] = remap(keys, values[slot], resized.length);
+                return (int) k & (resized.length - 1);
+            }
+            final LongBitSetBucket bits = new LongBitSetBucket(bucket);
+            values[slot] = remap(bucket, values[slot], bits, 32);
+            buckets[slot] = bucket = bits;
+        }
+        final LongBitSetBucket bits = (LongBitSetBucket) bucket;
+        Object[] values = this.values[slot];
+        final int n = bits.size(), r = LongBitSetBucket.rank(bits.words, k);
+        if (n == values.length) this.values[slot] = values = Arrays.copyOf(values, Math.min(256, n << 1));
+        System.arraycopy(values, r, values, r + 1, n - r);
+        bits.add(k);
+        return r;
+    }
+
+    /**
+     * Fetches the index of the present key within the values of the bucket.
+     */
+    private static int index0(LongBitBucket bucket, long k) {
+        return bucket instanceof LongBitHashBucket
+                ? (int) k & (((LongBitHashBucket) bucket).keys.length - 1)
+                : LongBitSetBucket.rank(((LongBitSetBucket) bucket).words, k);
+    }
+
+    /**
+     * Moves the values of a hash array into the slots of a resized hash array.
+     *
+     * @param keys   The hash array before resizing.
+     * @param values The values by slot of {@code keys}.
+     * @param length The length of the resized hash array.
+     */
+    private static Object[] remap(byte[] keys, Object[] values, int length) {
+        final Object[] remapped = new Object[length];
+        byte b;
+        if ((b = keys[0]) != (byte) -1) remapped[b & (length - 1)] = values[0];
+        for (int i = 1; i < keys.length; i++) {
+            if ((b = keys[i]) != 0) remapped[b & (length - 1)] = values[i];
+        }
+        return remapped;
+    }
+
+    /**
+     * Moves the values of a bucket into the indexes of another bucket holding the same keys.
+     *
+     * @param from   The bucket {@code values} is indexed by.
+     * @param values The values of {@code from}.
+     * @param to     The bucket to index the values by.
+     * @param length The length of the new values.
+     */
+    private static Object[] remap(LongBitBucket from, Object[] values, LongBitBucket to, int length) {
+        final Object[] remapped = new Object[length];
+        long k;
+        for (int i = -1; (i = from.nextIndex(i)) >= 0; ) {
+            remapped[index0(to, k = from.rawGet(i))] = values[index0(from, k)];
+        }
+        return remapped;
+    }
+
+    /**
+     * Probes the directory for the bucket relative to the given key, creating it if absent.
+     *
+     * @return The slot of the bucket.
+     */
+    private int fetch(long k) {
+        int slot;
+        if ((slot = find(k)) < 0) {
+            if (occupied >= threshold) {
+                grow0();
+                slot = find(k);
+            }
+            buckets[slot = ~slot] = new LongBitHashBucket(k & ~255);
+            values[slot] = new Object[4];
+            occupied++;
+        }
+        return slot;
+    }
+
+    /**
+     * Probes the directory for the bucket relative to the given key.
+     *
+     * @return The slot of the bucket, or the complement of the free slot to insert it at.
+     */
+    private int find(long k) {
+        final LongBitBucket[] buckets = this.buckets;
+        final int mask = buckets.length - 1;
+        final long relative = k & ~255;
+        LongBitBucket bucket;
+        int i = slot0(k, mask);
+        for (; (bucket = buckets[i]) != null; i = (i + 1) & mask) {
+            if (bucket.relative() == relative) return i;
+        }
+        return ~i;
+    }
+
+    /**
+     * Doubles the directory, or rehashes in place once empty buckets make up half of the directory's allowance.
+     *
+     * @throws IllegalStateException When the directory is already at its maximum capacity and full.
+     */
+    private void grow0() {
+        final int length = buckets.length;
+        if (length >= MAXIMUM_CAPACITY) {
+            if (occupied >= length - 1) {
+                if (live0() >= occupied) ise0(length);
+                rehash0(length);
+            }
+            return;
+        }
+        rehash0(live0() <= threshold >>> 1 ? length : length << 1);
+    }
+
+    /**
+     * Rehashes the non-empty buckets and their values into a directory of the given length,
+     * demoting the buckets where possible.
+     *
+     * @see LongBitBucket#demote()
+     */
+    private void rehash0(int length) {
+        final LongBitBucket[] from = buckets;
+        final Object[][] values = this.values;
+        allocate(length);
+        final LongBitBucket[] to = buckets;
+        final int mask = length - 1;
+        LongBitBucket bucket, demoted;
+        int n = 0;
+        for (int i = 0; i < from.length; i++) {
+            if ((bucket = from[i]) == null || bucket.size() == 0) continue;
+            Object[] v = values[i];
+            if ((demoted = bucket.demote()) != bucket) {
+                v = remap(bucket, v, demoted, ((LongBitHashBucket) demoted).keys.length);
+            }
+            int j = slot0(demoted.relative(), mask);
+            while (to[j] != null) j = (j + 1) & mask;
+            to[j] = demoted;
+            this.values[j] = v;
+            n++;
+        }
+        occupied = n;
+    }
+
+    /**
+     * Counts the non-empty buckets within the directory.
+     */
+    private int live0() {
+        int n = 0;
+        for (var bucket : buckets) {
+            if (bucket != null && bucket.size() != 0) n++;
+        }
+        return n;
+    }
+
+    private void allocate(int length) {
+        this.buckets = new LongBitBucket[length];
+        this.values = new Object[length][];
+        this.threshold = HashCommon.maxFill(length, Hash.DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Writes the size and the amount of non-empty buckets, then each bucket as written by
+     * {@link LongBitBucket#write(DataOutput)} followed by its values in the order of its keys.
+     */
+    private void writeObject(ObjectOutputStream s) throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(live0());
+        final LongBitBucket[] buckets = this.buckets;
+        LongBitBucket bucket;
+        for (int slot = 0; slot < buckets.length; slot++) {
+            if ((bucket = buckets[slot]) == null || bucket.size() == 0) continue;
+            bucket.write(s);
+            final Object[] values = this.values[slot];
+            for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+                s.writeObject(values[index0(bucket, bucket.rawGet(i))]);
+            }
+        }
+    }
+
+    /**
+     * Reads the map written by {@link #writeObject(ObjectOutputStream)} straight into the directory.
+     */
+    private void readObject(ObjectInputStream s) throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        final int count = s.readInt();
+        if (size < 0 || count < 0 || count > HashCommon.maxFill(MAXIMUM_CAPACITY, Hash.DEFAULT_LOAD_FACTOR)) {
+            throw new InvalidObjectException("Invalid size " + size + " or bucket count " + count);
+        }
+        allocate(Math.max(8, HashCommon.arraySize(count, Hash.DEFAULT_LOAD_FACTOR)));
+        long total = 0;
+        for (int n = 0; n < count; n++) {
+            final LongBitBucket bucket = read0(s);
+            int slot;
+            if ((slot = find(bucket.relative())) >= 0) {
+                throw new InvalidObjectException("Duplicate bucket " + bucket.relative());
+            }
+            buckets[slot = ~slot] = bucket;
+            final Object[] values = this.values[slot] = new Object[bucket instanceof LongBitHashBucket
+                    ? ((LongBitHashBucket) bucket).keys.length : Math.max(4, bucket.size())];
+            for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+                values[index0(bucket, bucket.rawGet(i))] = s.readObject();
+            }
+            total += bucket.size();
+        }
+        if (total != size) {
+            throw new InvalidObjectException("Expected " + size + " keys but got " + total);
+        }
+        occupied = count;
+    }
+
+    /**
+     * Reads a {@link LongBitHashBucket} or {@link LongBitSetBucket} written by {@link LongBitBucket#write(DataOutput)}.
+     *
+     * @throws IOException When the bucket is of any other type, or the input fails to read.
+     */
+    private static LongBitBucket read0(DataInput in) throws IOException {
+        final byte type = in.readByte();
+        final long relative = in.readLong();
+        if ((relative & 255) != 0) {
+            throw new InvalidObjectException("Invalid relative " + relative);
+        }
+        switch (type) {
+            case LongBitHashBucket.TYPE:
+                return LongBitHashBucket.read(relative, in);
+            case LongBitSetBucket.TYPE:
+                return LongBitSetBucket.read(relative, in);
+            default:
+                throw new InvalidObjectException("Unknown bucket type " + type);
+        }
+    }
+
+    @Contract("_ -> fail")
+    private static void ise0(int length) {
+        throw new IllegalStateException("Unable to grow the directory beyond " + length + " buckets.");
+    }
+
+    /**
+     * Fetches the hashed slot from the given key.
+     */
+    private static int slot0(long k, int mask) {
+        return (int) HashCommon.mix(k >>> 8) & mask;
+    }
+
+    /**
+     * Entry set view over the map.
+     */
+    final class j$entries extends AbstractObjectSet<Long2ObjectMap.Entry<V>> {
+        @Override
+        public ObjectIterator<Long2ObjectMap.Entry<V>> iterator() {
+            return new j$itr();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            Long2ObjectBitHashMap.this.clear();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) return false;
+            final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            if (!(entry.getKey() instanceof Long)) return false;
+            final long k = (Long) entry.getKey();
+            return containsKey(k) && Objects.equals(get(k), entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) return false;
+            Long2ObjectBitHashMap.this.remove((long) (Long) ((Map.Entry<?, ?>) o).getKey());
+            return true;
+        }
+    }
+
+    /**
+     * Entry iterator walking the buckets in directory order, and the keys in bucket order.
+     */
+    final class j$itr implements ObjectIterator<Long2ObjectMap.Entry<V>> {
+        private final LongBitBucket[] buckets = Long2ObjectBitHashMap.this.buckets;
+        private final Object[][] values = Long2ObjectBitHashMap.this.values;
+        private LongBitBucket bucket;
+        private int slot = -1, cursor = -1, next = -1, rank;
+        private j$entry last;
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) return true;
+            final LongBitBucket[] buckets = this.buckets;
+            for (LongBitBucket bucket = this.bucket; ; ) {
+                if (bucket != null && (next = bucket.nextIndex(cursor)) >= 0) return true;
+                if (++slot >= buckets.length) {
+                    slot = buckets.length;
+                    return false;
+                }
+                this.bucket = bucket = buckets[slot];
+                cursor = -1;
+                rank = 0;
+            }
+        }
+
+        @Override
+        public Long2ObjectMap.Entry<V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final LongBitBucket bucket = this.bucket;
+            final long k = bucket.rawGet(cursor = next);
+            next = -1;
+            return last = new j$entry(values[slot], bucket instanceof LongBitHashBucket ? cursor : rank++, k);
+        }
+
+        @Override
+        public void remove() {
+            final j$entry last = this.last;
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            this.last = null;
+            Long2ObjectBitHashMap.this.remove(last.getLongKey());
+            // The values above shift down in a bitset bucket.
+            if (bucket instanceof LongBitSetBucket) rank--;
+        }
+    }
+
+    /**
+     * Entry writing through into the values of its bucket.
+     */
+    final class j$entry extends AbstractLong2ObjectMap.BasicEntry<V> {
+        private final Object[] values;
+        private final int index;
+
+        @SuppressWarnings("unchecked")
+        j$entry(Object[] values, int index, long k) {
+            super(k, (V) values[index]);
+            this.values = values;
+            this.index = index;
+        }
+
+        @Override
+        public V setValue(V v) {
+            final V old = value;
+            values[index] = value = v;
+            return old;
+        }
+    }
+}
@@ -1,18 +1,66 @@
 package net.kjp12.hachimitsu.collections;// Created 2022-11-03T01:46:31
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.LongConsumer;
+
 /**
  * @author KJP12
  * @since ${version}
  **/
 abstract class LongBitBucket {
+    private static final VarHandle REFS;
+
+    static {
+        try {
+            REFS = MethodHandles.lookup().findVarHandle(LongBitBucket.class, "refs", int.class);
+        } catch (ReflectiveOperationException roe) {
+            throw new ExceptionInInitializerError(roe);
+        }
+    }
+
     protected final long relative;
     protected int size;
+    /**
+     * The amount of directories referencing the bucket, raised by {@link LongBitHashSet#snapshot()} and lowered
+     * as each directory replaces or drops the bucket. A bucket referenced by more than one directory
+     * is never modified in place; it's copied into the modifying directory first.
+     * <p>
+     * Directories may live on different threads once snapshotted, hence the atomic decrements and acquiring reads.
+     * Only directories referencing the bucket raise the count, so a count of 1 can't be raised by anyone else.
+     */
+    @SuppressWarnings("unused") // Accessed via REFS
+    private int refs = 1;
 
     protected LongBitBucket(long relative, int size) {
         this.relative = relative;
         this.size = size;
     }
 
+    /**
+     * Whether the bucket is referenced by more than one directory, and must be copied before being modified.
+     */
+    final boolean shared() {
+        return (int) REFS.getAcquire(this) > 1;
+    }
+
+    /**
+     * Adds a directory referencing the bucket.
+     */
+    final void retain() {
+        REFS.getAndAdd(this, 1);
+    }
+
+    /**
+     * Removes a directory referencing the bucket, once the directory no longer references it.
+     */
+    final void release() {
+        REFS.getAndAdd(this, -1);
+    }
+
     /**
      * The relative long of the bucket. Is always the most significant 56 bits.
      */
@@ -53,9 +101,29 @@ abstract class LongBitBucket {
     abstract boolean add(long l);
 
     /**
-     * Clears the bucket of any longs.
+     * Creates an independent copy of the bucket.
      */
-    abstract void clear();
+    abstract LongBitBucket copy();
+
+    /**
+     * Converts the bucket into a more general bucket holding the same longs.
+     * <p>
+     * This is called when {@link #add(long)} or {@link #remove(long)} fails despite
+     * the long being absent or present respectively, as the bucket cannot represent the result.
+     */
+    abstract LongBitBucket promote();
+
+    /**
+     * Converts the bucket into a more compact bucket holding the same longs, if it has become sparse enough.
+     * <p>
+     * This is called when the directory is rehashed, and should leave a margin such that the result
+     * isn't immediately promoted again.
+     *
+     * @return The demoted bucket, or this if there's nothing to gain.
+     */
+    LongBitBucket demote() {
+        return this;
+    }
 
     /**
      * Gets the long at a given index. Invalid index is undefined behaviour.
@@ -72,6 +140,29 @@ abstract class LongBitBucket {
      */
     abstract int nextIndex(int i, int s);
 
-    /** Converts the bucket into an NBT element. Implementation-defined. */
-    //abstract NbtElement toNbt();
+    /**
+     * Passes every long within the bucket to the consumer.
+     */
+    void forEach(LongConsumer consumer) {
+        for (int i = -1; (i = nextIndex(i)) >= 0; ) consumer.accept(rawGet(i));
+    }
+
+    /**
+     * The estimated amount of bytes retained by the bucket, assuming a 64-bit JVM with compressed oops.
+     */
+    abstract int footprint();
+
+    /**
+     * The amount of bytes {@link #write(DataOutput)} will write.
+     */
+    abstract int serializedSize();
+
+    /**
+     * Writes the bucket's type, relative and raw structure. Implementation-defined.
+     *
+     * @param out The output to write the bucket to.
+     * @throws IOException When the output fails to write.
+     * @see LongBitHashSet#write(DataOutput)
+     */
+    abstract void write(DataOutput out) throws IOException;
 }
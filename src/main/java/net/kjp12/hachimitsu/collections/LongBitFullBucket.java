@@ -0,0 +1,101 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T14:31:19
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * A bucket with every long of the relative range present, requiring no payload.
+ * <p>
+ * The bucket is immutable, and always holds all 256 longs; the type alone decides membership.
+ * Removing a single long requires {@link #promote() promoting} to a {@link LongBitRunBucket},
+ * while clearing requires replacing the bucket within the directory.
+ * As nothing can change, {@link #copy()} returns the bucket itself, and its reference count is meaningless.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+class LongBitFullBucket extends LongBitBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 2;
+
+    LongBitFullBucket(long relative) {
+        super(relative, 256);
+    }
+
+    @Override
+    boolean contains(long l) {
+        return isRelative(l);
+    }
+
+    /**
+     * Always false, as there's no payload to remove from.
+     */
+    @Override
+    boolean remove(long l) {
+        return false;
+    }
+
+    /**
+     * Always false, as the long is already present.
+     */
+    @Override
+    boolean add(long l) {
+        return false;
+    }
+
+    @Override
+    LongBitFullBucket copy() {
+        return this;
+    }
+
+    /**
+     * Splits into a {@link LongBitRunBucket} covering the same longs.
+     */
+    @Override
+    LongBitRunBucket promote() {
+        return new LongBitRunBucket(relative, 0xFF00L, 1);
+    }
+
+    @Override
+    long rawGet(int i) {
+        return relative | i;
+    }
+
+    @Override
+    void forEach(LongConsumer consumer) {
+        final long relative = this.relative;
+        for (int i = 0; i < 256; i++) consumer.accept(relative | i);
+    }
+
+    @Override
+    int nextIndex(int i) {
+        return ++i < 256 ? i : -1;
+    }
+
+    @Override
+    int nextIndex(int i, int s) {
+        return (i += s + 1) < 256 ? i : -1;
+    }
+
+    /**
+     * 12 byte header, relative, size and reference count, aligned to 8; no payload.
+     */
+    @Override
+    int footprint() {
+        return 32;
+    }
+
+    @Override
+    int serializedSize() {
+        return 9;
+    }
+
+    @Override
+    void write(DataOutput out) throws IOException {
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+    }
+}
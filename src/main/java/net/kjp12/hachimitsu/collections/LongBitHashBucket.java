@@ -1,6 +1,10 @@
 package net.kjp12.hachimitsu.collections;// Created 2022-11-03T01:41:39
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.function.LongConsumer;
 
 /**
  * A hash-based bucket of longs, storing the least significant 8 bits in a hash array
@@ -10,6 +14,10 @@ import java.util.Arrays;
  * @since ${version}
  **/
 class LongBitHashBucket extends LongBitBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 0;
     protected byte[] keys;
 
     /**
@@ -92,10 +100,18 @@ class LongBitHashBucket extends LongBitBucket {
         return false;
     }
 
-    @Override
+    /**
+     * Clears the bucket of any longs.
+     */
     public void clear() {
         keys[0] = -1;
         Arrays.fill(keys, 1, keys.length, (byte) 0);
+        size = 0;
+    }
+
+    @Override
+    LongBitHashBucket copy() {
+        return new LongBitHashBucket(relative, keys.clone());
     }
 
     @Override
@@ -103,6 +119,20 @@ class LongBitHashBucket extends LongBitBucket {
         return relative | (keys[i] & 255);
     }
 
+    /**
+     * Scans the hash array straight through, skipping the empty markers.
+     */
+    @Override
+    void forEach(LongConsumer consumer) {
+        final byte[] keys = this.keys;
+        final long relative = this.relative;
+        byte b;
+        if ((b = keys[0]) != (byte) -1) consumer.accept(relative | (b & 255));
+        for (int i = 1, l = keys.length; i < l; i++) {
+            if ((b = keys[i]) != 0) consumer.accept(relative | (b & 255));
+        }
+    }
+
     @Override
     public int nextIndex(int i) {
         if (i < 0) {
@@ -128,13 +158,93 @@ class LongBitHashBucket extends LongBitBucket {
         return i >= l ? -1 : i;
     }
 
-    //@Override
-    //public NbtCompound toNbt() {
-    //    var c = new NbtCompound();
-    //    c.putLong("r", relative);
-    //    c.put("a", new NbtByteArray(keys));
-    //    return c;
-    //}
+    /**
+     * Converts into a {@link LongBitSetBucket} as the hash array cannot grow any further.
+     */
+    @Override
+    LongBitSetBucket promote() {
+        return new LongBitSetBucket(this);
+    }
+
+    /**
+     * Packs into a smaller hash array once at most a quarter of the current hash array is in use.
+     */
+    @Override
+    LongBitBucket demote() {
+        final int length = keys.length;
+        if (length == 4 || size > length >>> 2) return this;
+        // Always fits, as the longs already fit within the current length.
+        return pack(this);
+    }
+
+    /**
+     * Packs the longs of the bucket into the smallest hash array that holds them without collision.
+     *
+     * @param bucket The bucket to pack the longs of.
+     * @return The packed bucket, or null if the longs do not fit within a hash array of 16.
+     */
+    static LongBitHashBucket pack(LongBitBucket bucket) {
+        if (bucket.size() > 16) return null;
+        retry:
+        for (int length = 4; length <= 16; length <<= 1) {
+            final byte[] keys = new byte[length];
+            keys[0] = -1;
+            for (int i = -1, j; (i = bucket.nextIndex(i)) >= 0; ) {
+                final byte b = (byte) bucket.rawGet(i);
+                if (keys[j = b & (length - 1)] != (j == 0 ? -1 : 0)) continue retry;
+                keys[j] = b;
+            }
+            return new LongBitHashBucket(bucket.relative(), keys);
+        }
+        return null;
+    }
+
+    /**
+     * 12 byte header, relative, size and reference, then the 16 byte array header and keys aligned to 8.
+     */
+    @Override
+    int footprint() {
+        return 32 + (16 + keys.length + 7 & ~7);
+    }
+
+    @Override
+    int serializedSize() {
+        return 10 + keys.length;
+    }
+
+    @Override
+    void write(DataOutput out) throws IOException {
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+        out.writeByte(keys.length);
+        out.write(keys);
+    }
+
+    /**
+     * Reads the raw hash array written by {@link #write(DataOutput)}, after the type and relative.
+     *
+     * @param relative The relative already read.
+     * @param in       The input to read the hash array from.
+     * @return The bucket as written.
+     * @throws IOException When the input fails to read, or the hash array is not in hash-order.
+     */
+    static LongBitHashBucket read(long relative, DataInput in) throws IOException {
+        int length = in.readUnsignedByte();
+        if (length < 4 || length > 16 || (length & (length - 1)) != 0) {
+            throw new IOException("Invalid hash array length " + length);
+        }
+        var keys = new byte[length];
+        in.readFully(keys);
+        if (keys[0] != -1 && (keys[0] & (length - 1)) != 0) {
+            throw new IOException("Hash array is not in hash-order at 0");
+        }
+        for (int i = 1; i < length; i++) {
+            if (keys[i] != 0 && (keys[i] & (length - 1)) != i) {
+                throw new IOException("Hash array is not in hash-order at " + i);
+            }
+        }
+        return new LongBitHashBucket(relative, keys);
+    }
 
     private boolean resize(byte l) {
         int nl;
@@ -142,6 +252,7 @@ class LongBitHashBucket extends LongBitBucket {
                 // Too large; longs will be more efficient.
                 /*if(*/(nl = size(l)) > 16) return false;
         insert0(l, copy0(this.keys, this.keys = new byte[nl]));
+        if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.hashResize();
         return true;
     }
 
@@ -1,26 +1,209 @@
 package net.kjp12.hachimitsu.collections;// Created 2022-11-03T01:37:29
 
+import it.unimi.dsi.fastutil.Hash;
+import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.AbstractLongSet;
+import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongIterators;
 import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSpliterator;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.TestOnly;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
 
 /**
  * A long set based around buckets of hash-keys and bits.
+ * <p>
+ * Each bucket spans 256 longs by default, which may be widened to 4096 or 65536 by {@link Span}
+ * for dense sets with few, clustered relatives, trading per-bucket overhead for fewer directory slots.
  *
  * @author KJP12
  * @see LongBitBucket
  * @see LongBitHashBucket
  * @see LongBitSetBucket
+ * @see LongBitFullBucket
+ * @see LongBitRunBucket
+ * @see LongBitWideHashBucket
+ * @see LongBitWideSetBucket
  * @since ${version}
  **/
 public class LongBitHashSet extends AbstractLongSet implements LongSet {
+    /**
+     * The largest the directory is allowed to grow to.
+     */
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    /**
+     * The magic of the binary format, {@code LBHS}.
+     */
+    private static final int MAGIC = 0x4C424853;
+    /**
+     * The version of the binary format.
+     */
+    private static final byte VERSION = 1;
+    /**
+     * The version of the binary format for wider spans, followed by the shift of the span.
+     */
+    private static final byte VERSION_SPAN = 2;
     private int size;
-    private LongBitBucket[] buckets = new LongBitBucket[8];
+    /**
+     * The amount of non-null slots within {@link #buckets}.
+     */
+    private int occupied;
+    /**
+     * The amount of occupied slots allowed before {@link #buckets} must be grown.
+     */
+    private int threshold;
+    /**
+     * The size below which the directory is compacted, being a quarter of the size at the last rehash
+     * such that adding and removing around the mark doesn't repeatedly rehash.
+     */
+    private int low;
+    /**
+     * Incremented whenever a relative is added to or removed from the directory,
+     * allowing derived indexes to tell when they're stale.
+     */
+    int structure;
+    /**
+     * Incremented whenever a long is added or removed, allowing {@link #rank(long)} and {@link #select(long)}
+     * to tell when their index is stale.
+     */
+    int modifications;
+    /**
+     * Open-addressed directory of buckets, linearly probed by the mixed {@link LongBitBucket#relative() relative}.
+     */
+    LongBitBucket[] buckets;
+    /**
+     * The amount of low bits held by each bucket, 8 unless widened by {@link Span}.
+     */
+    final int shift;
+    /**
+     * The relatives of the non-empty buckets in signed order, valid while {@link #ranked} matches {@link #modifications}.
+     */
+    private long[] rankRelatives;
+    /**
+     * The buckets at the same index as their relative within {@link #rankRelatives}.
+     */
+    private LongBitBucket[] rankBuckets;
+    /**
+     * The amount of longs before each bucket within {@link #rankRelatives}, ending with the size.
+     */
+    private int[] rankCounts;
+    private int ranked = -1;
+    /**
+     * The {@link #generation} each slot of {@link #buckets} was last filled in, only present for scratch sets.
+     */
+    private int[] stamps;
+    /**
+     * Incremented by {@link #clear()} on scratch sets, turning every slot stale at once.
+     */
+    private int generation;
+    /**
+     * Whether the directory may hold slots of an older generation, which count as empty until
+     * either refilled or nulled out by {@link #settle0()}.
+     */
+    private boolean stale;
+    /**
+     * Whether this set has ever shared its buckets through {@link #snapshot()}, requiring {@link #clear()}
+     * to release them rather than merely dropping the directory.
+     */
+    private boolean sharing;
+
+    public LongBitHashSet() {
+        this(8, 8);
+    }
+
+    /**
+     * Creates an empty set with buckets of the given span.
+     *
+     * @param span The amount of longs per bucket.
+     */
+    public LongBitHashSet(Span span) {
+        this(8, span.shift);
+    }
+
+    /**
+     * Creates an empty set with buckets of the given span, optionally as a scratch set to be cleared and refilled.
+     * <p>
+     * A scratch set keeps its directory and buckets on {@link #clear()}, stamping each slot with a generation
+     * instead such that clearing costs the same regardless of how large the set has grown. The stale buckets
+     * count as empty, and are cleared and reused in place once a long of the same relative is next added,
+     * or dropped once the directory is next walked as a whole. Copies and snapshots of a scratch set are not.
+     *
+     * @param span    The amount of longs per bucket.
+     * @param scratch Whether {@link #clear()} should keep the directory and buckets for reuse.
+     */
+    public LongBitHashSet(Span span, boolean scratch) {
+        this(8, span.shift);
+        if (scratch) this.stamps = new int[8];
+    }
+
+    /**
+     * Creates an empty set with a directory of the given length.
+     *
+     * @param capacity The length of the directory, must be a power of 2.
+     * @param shift    The amount of low bits held by each bucket.
+     */
+    private LongBitHashSet(int capacity, int shift) {
+        this.buckets = new LongBitBucket[capacity];
+        this.threshold = HashCommon.maxFill(capacity, Hash.DEFAULT_LOAD_FACTOR);
+        this.shift = shift;
+    }
+
+    /**
+     * Creates a deep copy of the given set, copying bucket by bucket.
+     *
+     * @param set The set to copy.
+     */
+    public LongBitHashSet(LongBitHashSet set) {
+        set.settle0();
+        LongBitBucket[] buckets = this.buckets = set.buckets.clone();
+        LongBitBucket bucket;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((bucket = buckets[i]) != null) buckets[i] = bucket.copy();
+        }
+        this.size = set.size;
+        this.occupied = set.occupied;
+        this.threshold = set.threshold;
+        this.low = set.low;
+        this.shift = set.shift;
+    }
+
+    /**
+     * Creates a set sharing the given directory's buckets with the given set.
+     *
+     * @param set     The set to share with.
+     * @param buckets A copy of the set's directory, with every bucket retained.
+     */
+    private LongBitHashSet(LongBitHashSet set, LongBitBucket[] buckets) {
+        this.buckets = buckets;
+        this.sharing = true;
+        this.size = set.size;
+        this.occupied = set.occupied;
+        this.threshold = set.threshold;
+        this.low = set.low;
+        this.shift = set.shift;
+    }
 
     @Override
     public int size() {
@@ -32,215 +215,1660 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
         return size == 0;
     }
 
-    @Override
-    public LongIterator iterator() {
-        return isEmpty() ? LongIterators.EMPTY_ITERATOR : new j$itr(buckets);
+    /**
+     * The span of the buckets of this set.
+     */
+    public Span span() {
+        return shift == 8 ? Span.S256 : shift == 12 ? Span.S4096 : Span.S65536;
+    }
+
+    @Override
+    public LongIterator iterator() {
+        if (isEmpty()) return LongIterators.EMPTY_ITERATOR;
+        settle0();
+        return new j$itr(this);
+    }
+
+    /**
+     * Freezes the current contents into an immutable set with a compact, read-optimised layout.
+     * <p>
+     * This set is left as is, and later changes to it are not reflected in the frozen set.
+     *
+     * @return An immutable copy of the set.
+     * @see FrozenLongBitHashSet
+     */
+    public FrozenLongBitHashSet freeze() {
+        final long[] relatives = new long[live0()];
+        int n = 0;
+        for (var bucket : buckets) {
+            if (bucket != null && bucket.size() != 0) relatives[n++] = bucket.relative();
+        }
+        Arrays.sort(relatives);
+        // A bitset is only worth it once the bucket holds at least a sixteenth of its span, at 2 bytes per key.
+        final int s = shift - 6, dense = 4 << s;
+        final long[] offsets = new long[n + 1];
+        long d = 0, k = 0;
+        for (int i = 0; i < n; i++) {
+            final int size = fetch0(relatives[i]).size();
+            if (size >= dense) d++;
+            else k += size;
+            offsets[i + 1] = d << 32 | k;
+        }
+        if (d << s > it.unimi.dsi.fastutil.Arrays.MAX_ARRAY_SIZE) ise1(d);
+        final long[] words = new long[(int) d << s], scratch = new long[1 << s];
+        final char[] keys = new char[(int) k];
+        final int mask = ~(-1 << shift);
+        for (int i = 0; i < n; i++) {
+            final LongBitBucket bucket = fetch0(relatives[i]);
+            final long from = offsets[i];
+            if ((int) (from >>> 32) != (int) (offsets[i + 1] >>> 32)) {
+                System.arraycopy(words(bucket, scratch), 0, words, (int) (from >>> 32) << s, 1 << s);
+            } else {
+                int j = (int) from;
+                for (int x = -1; (x = bucket.nextIndex(x)) >= 0; ) keys[j++] = (char) (bucket.rawGet(x) & mask);
+                Arrays.sort(keys, (int) from, j);
+            }
+        }
+        return new FrozenLongBitHashSet(relatives, offsets, words, keys, size, shift);
+    }
+
+    /**
+     * Creates a copy of the set that shares its buckets with this set, copying a bucket only once either set
+     * next modifies it. This costs a single walk over the directory regardless of the amount of longs.
+     * <p>
+     * Each bucket counts the directories referencing it, such that once every other set has copied, replaced
+     * or cleared away a bucket, the last set referencing it modifies it in place again. A set that's dropped
+     * without doing so still counts, leaving the others to copy its buckets once more on their next write.
+     * <p>
+     * Both sets remain mutable and independent of each other. The snapshot may be handed to other threads
+     * while this set continues to be modified, provided it's safely published and not itself modified.
+     *
+     * @return A copy-on-write copy of the set.
+     * @see #LongBitHashSet(LongBitHashSet)
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    public LongBitHashSet snapshot() {
+        settle0();
+        final LongBitBucket[] buckets = this.buckets;
+        LongBitBucket bucket;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((bucket = buckets[i]) != null) bucket.retain();
+        }
+        sharing = true;
+        return new LongBitHashSet(this, buckets.clone());
+    }
+
+    /**
+     * Takes a snapshot of the shape of the set for sizing and metrics.
+     * <p>
+     * This costs a single walk over the directory without touching the longs within the buckets,
+     * making it cheap enough to call periodically on large sets.
+     *
+     * @return The statistics of the set at the time of the call.
+     */
+    public Stats stats() {
+        settle0();
+        final LongBitBucket[] buckets = this.buckets;
+        final int[] sizes = new int[(1 << shift) + 1], lengths = new int[Math.max(16, LongBitWideHashBucket.limit(shift)) + 1];
+        int hash = 0, set = 0, full = 0, run = 0;
+        // The set itself, then the directory array.
+        long bytes = 40 + (16 + 4L * buckets.length + 7 & ~7);
+        for (var bucket : buckets) {
+            if (bucket == null) continue;
+            sizes[bucket.size()]++;
+            bytes += bucket.footprint();
+            if (bucket instanceof LongBitHashBucket) {
+                hash++;
+                lengths[((LongBitHashBucket) bucket).keys.length]++;
+            } else if (bucket instanceof LongBitWideHashBucket) {
+                hash++;
+                lengths[((LongBitWideHashBucket) bucket).keys.length]++;
+            } else if (bucket instanceof LongBitSetBucket) {
+                set++;
+            } else if (bucket instanceof LongBitFullBucket) {
+                full++;
+            } else {
+                run++;
+            }
+        }
+        return new Stats(size, buckets.length, occupied, hash, set, full, run, sizes, lengths, bytes);
+    }
+
+    /**
+     * Passes every long to the action bucket by bucket, with each bucket looping over its own structure
+     * rather than going through {@link LongBitBucket#nextIndex(int)} and {@link LongBitBucket#rawGet(int)} per long.
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action);
+        settle0();
+        for (var bucket : buckets) {
+            if (bucket != null) bucket.forEach(action);
+        }
+    }
+
+    /**
+     * Splits over ranges of the directory, allowing {@link #longParallelStream()} to spread across cores.
+     */
+    @Override
+    public LongSpliterator spliterator() {
+        settle0();
+        return new j$spltr(buckets, 0, buckets.length, size);
+    }
+
+    /**
+     * Clears the set, releasing the directory back down to its initial size.
+     * <p>
+     * Scratch sets instead keep the directory, bumping the generation such that every slot is stale at once.
+     *
+     * @see #LongBitHashSet(Span, boolean)
+     */
+    @Override
+    public void clear() {
+        if (stamps == null) {
+            if (sharing) release0();
+            this.buckets = new LongBitBucket[8];
+            this.threshold = HashCommon.maxFill(8, Hash.DEFAULT_LOAD_FACTOR);
+        } else {
+            // Stamps of a wrapped generation would otherwise come back to life.
+            if (++generation == 0) {
+                if (sharing) release0();
+                Arrays.fill(buckets, null);
+            }
+            // Stale buckets are still held, and only released once dropped from the directory.
+            stale = true;
+        }
+        size = 0;
+        occupied = 0;
+        low = 0;
+        structure++;
+        modifications++;
+    }
+
+    /**
+     * Trims the set down to its contents, dropping empty buckets, demoting sparse buckets and shrinking
+     * the directory to the smallest length that fits the remaining buckets.
+     * <p>
+     * This is done automatically with some margin once the size drops to a quarter of what it was at the
+     * last rehash, but may be called explicitly after a large removal, or before keeping the set for a while.
+     */
+    public void trim() {
+        rehash0(length0(live0()));
+    }
+
+    @Override
+    public boolean add(long l) {
+        if (add0(l)) {
+            size++;
+            modifications++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean add0(long l) {
+        LongBitBucket bucket;
+        if ((bucket = fetch(l)).shared()) {
+            if (bucket.contains(l)) return false;
+            bucket = own(bucket);
+        }
+        if (!bucket.add(l)) {
+            if (bucket.contains(l)) return false;
+            (bucket = promote(bucket)).add(l);
+        }
+        fill(bucket);
+        return true;
+    }
+
+    @Override
+    public boolean contains(long l) {
+        var bucket = fetch0(l);
+        return bucket != null && bucket.contains(l);
+    }
+
+    /**
+     * Tests every long within the range of the array, setting bit {@code i} of the bitmap if {@code keys[off + i]}
+     * is within the set, and clearing it otherwise.
+     * <p>
+     * The range is tested in blocks of 64, being a word of the bitmap. Each block first resolves the bucket of every
+     * long, then tests every long against its bucket, such that the loads of the directory and of the buckets each
+     * run back to back and overlap rather than alternating. The common buckets are tested inline rather than through
+     * a virtual call, as the relative is already known to match.
+     *
+     * @param keys         The array to test from.
+     * @param off          The offset within the array to start from.
+     * @param len          The amount of longs to test.
+     * @param resultBitmap The bitmap to write into, at least {@code (len + 63) / 64} words, or null to only count.
+     * @return The amount of longs within the set, counting duplicates.
+     * @throws IndexOutOfBoundsException When the range is out of bounds of the array, or the bitmap is too short.
+     */
+    public int contains(long[] keys, int off, int len, long[] resultBitmap) {
+        Objects.checkFromIndexSize(off, len, keys.length);
+        if (resultBitmap != null) Objects.checkFromIndexSize(0, len + 63 >>> 6, resultBitmap.length);
+        final LongBitBucket[] buckets = this.buckets, block = new LongBitBucket[64];
+        final int[] stamps = stale ? this.stamps : null;
+        final int mask = buckets.length - 1, generation = this.generation;
+        final long span = -1L << shift;
+        int hits = 0;
+        for (int base = off, end = off + len, word = 0; base < end; base += 64, word++) {
+            final int n = Math.min(64, end - base);
+            for (int j = 0; j < n; j++) {
+                final long relative = keys[base + j] & span;
+                LongBitBucket bucket;
+                for (int i = index0(relative, buckets); (bucket = buckets[i]) != null; i = (i + 1) & mask) {
+                    if (stamps != null && stamps[i] != generation) {
+                        bucket = null;
+                        break;
+                    }
+                    if (bucket.relative() == relative) break;
+                }
+                block[j] = bucket;
+            }
+            long bits = 0;
+            for (int j = 0; j < n; j++) {
+                final LongBitBucket bucket = block[j];
+                if (bucket != null && contains0(bucket, keys[base + j])) bits |= 1L << j;
+            }
+            hits += Long.bitCount(bits);
+            if (resultBitmap != null) resultBitmap[word] = bits;
+        }
+        return hits;
+    }
+
+    /**
+     * Tests the bucket of the same relative for the long, testing the common buckets inline.
+     */
+    private static boolean contains0(LongBitBucket bucket, long l) {
+        if (bucket instanceof LongBitSetBucket) {
+            final long[] words = ((LongBitSetBucket) bucket).words;
+            return (words[(int) (l >>> 6) & (words.length - 1)] & LongBitSetBucket.word(l)) != 0;
+        }
+        if (bucket instanceof LongBitHashBucket) {
+            final byte[] keys = ((LongBitHashBucket) bucket).keys;
+            return keys[(int) l & (keys.length - 1)] == (byte) l;
+        }
+        if (bucket instanceof LongBitFullBucket) {
+            return true;
+        }
+        return bucket.contains(l);
+    }
+
+    /**
+     * Counts the longs below the given long in signed order.
+     * <p>
+     * This is backed by a cumulative count over the buckets in signed order, built on first use after any
+     * modification at the cost of a walk over the directory and a sort of the relatives. Within the bucket,
+     * bitsets are counted by popcount.
+     *
+     * @param l The long to count up to, exclusive. Need not be within the set.
+     * @return The amount of longs below {@code l}, being its index if it's within the set.
+     * @see #select(long)
+     */
+    public int rank(long l) {
+        ranks0();
+        final int i = Arrays.binarySearch(rankRelatives, l & -1L << shift);
+        if (i < 0) return rankCounts[~i];
+        return rankCounts[i] + rank0(rankBuckets[i], l);
+    }
+
+    /**
+     * Fetches the long at the given index in signed order, the inverse of {@link #rank(long)}.
+     * <p>
+     * This shares the index of {@link #rank(long)}, binary searching the cumulative counts for the bucket.
+     * Within the bucket, bitsets are selected by popcount.
+     *
+     * @param k The index of the long, between 0 inclusive and {@link #size()} exclusive.
+     * @return The long with exactly {@code k} longs below it.
+     * @throws IndexOutOfBoundsException When {@code k} is out of bounds of the set.
+     */
+    public long select(long k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Index " + k + " out of bounds for length " + size);
+        }
+        ranks0();
+        final int[] counts = rankCounts;
+        int i = Arrays.binarySearch(counts, (int) k);
+        // The counts are strictly ascending, so anything not found is within the bucket before.
+        if (i < 0) i = ~i - 1;
+        return select0(rankBuckets[i], (int) k - counts[i]);
+    }
+
+    /**
+     * Rebuilds the index of {@link #rank(long)} and {@link #select(long)} if the set has been modified since.
+     */
+    private void ranks0() {
+        if (ranked == modifications) return;
+        final long[] relatives = new long[live0()];
+        int n = 0;
+        for (var bucket : buckets) {
+            if (bucket != null && bucket.size() != 0) relatives[n++] = bucket.relative();
+        }
+        Arrays.sort(relatives);
+        final LongBitBucket[] sorted = new LongBitBucket[n];
+        final int[] counts = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            counts[i + 1] = counts[i] + (sorted[i] = fetch0(relatives[i])).size();
+        }
+        this.rankRelatives = relatives;
+        this.rankBuckets = sorted;
+        this.rankCounts = counts;
+        this.ranked = modifications;
+    }
+
+    /**
+     * Counts the longs of the bucket below the given long, which must be relative to the bucket.
+     */
+    private static int rank0(LongBitBucket bucket, long l) {
+        if (bucket instanceof LongBitSetBucket) {
+            return LongBitSetBucket.rank(((LongBitSetBucket) bucket).words, l);
+        }
+        if (bucket instanceof LongBitFullBucket) {
+            return (int) (l - bucket.relative());
+        }
+        int r = 0;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+            if (bucket.rawGet(i) < l) r++;
+        }
+        return r;
+    }
+
+    /**
+     * Fetches the long of the bucket with exactly {@code s} longs of the bucket below it.
+     */
+    private static long select0(LongBitBucket bucket, int s) {
+        if (bucket instanceof LongBitHashBucket) {
+            // Only the byte hash buckets are in hash-order rather than in order of the low bits.
+            final long[] longs = new long[16];
+            int c = 0;
+            for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) longs[c++] = bucket.rawGet(i);
+            Arrays.sort(longs, 0, c);
+            return longs[s];
+        }
+        return bucket.rawGet(bucket.nextIndex(-1, s));
+    }
+
+    @Override
+    public long[] toArray(long[] longs) {
+        if (longs == null || longs.length < size) longs = new long[size];
+        int i = LongIterators.unwrap(longIterator(), longs);
+        assert i == size : "Unexpected mismatch: expected " + size + " but got " + i + "!";
+        return longs;
+    }
+
+    @Override
+    public boolean remove(long l) {
+        if (remove0(l)) {
+            modifications++;
+            if (--size < low) shrink0();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the long without shrinking, keeping the directory in place for {@link j$itr#remove()}.
+     * The shrink is left to the next removal.
+     */
+    private void remove1(long l) {
+        if (remove0(l)) {
+            modifications++;
+            size--;
+        }
+    }
+
+    private boolean remove0(long l) {
+        var bucket = fetch0(l);
+        if (bucket == null) return false;
+        if (bucket.shared()) {
+            if (!bucket.contains(l)) return false;
+            bucket = own(bucket);
+        }
+        return bucket.remove(l) || bucket.contains(l) && promote(bucket).remove(l);
+    }
+
+    /**
+     * Adds every long of the collection, ORing bucket by bucket if it's a {@link LongBitHashSet},
+     * otherwise grouping by relative as per {@link #addAll(long[], int, int)}.
+     */
+    @Override
+    public boolean addAll(LongCollection c) {
+        if (c instanceof LongBitHashSet && ((LongBitHashSet) c).shift == shift) {
+            return or((LongBitHashSet) c);
+        }
+        if (c.isEmpty()) {
+            return false;
+        }
+        final long[] sorted = c.toLongArray();
+        Arrays.sort(sorted);
+        return addAll0(sorted, sorted.length);
+    }
+
+    /**
+     * Adds every long within the array.
+     *
+     * @param keys The array to add from.
+     * @return true if this set was changed as a result.
+     * @see #addAll(long[], int, int)
+     */
+    public boolean addAll(long[] keys) {
+        return addAll(keys, 0, keys.length);
+    }
+
+    /**
+     * Adds every long within the range of the array, resolving each bucket once per relative
+     * rather than once per long.
+     * <p>
+     * The range is copied and sorted to group the longs by relative, the directory is grown once to
+     * fit every new relative, then each group is either added long by long into its bucket, or when larger
+     * than a {@link LongBitHashBucket} can hold, ORed into its bucket as a bitset.
+     *
+     * @param keys The array to add from.
+     * @param off  The offset within the array to start from.
+     * @param len  The amount of longs to add.
+     * @return true if this set was changed as a result.
+     * @throws IndexOutOfBoundsException When the range is out of bounds of the array.
+     */
+    public boolean addAll(long[] keys, int off, int len) {
+        Objects.checkFromIndexSize(off, len, keys.length);
+        if (len == 0) {
+            return false;
+        }
+        final long[] sorted = Arrays.copyOfRange(keys, off, off + len);
+        Arrays.sort(sorted);
+        return addAll0(sorted, len);
+    }
+
+    /**
+     * Adds the sorted longs group by group.
+     *
+     * @param sorted The longs to add, sorted such that longs of the same relative are adjacent.
+     * @param len    The amount of longs within the array to add.
+     * @return true if this set was changed as a result.
+     */
+    private boolean addAll0(long[] sorted, int len) {
+        final long mask = -1L << shift;
+        int fresh = 0;
+        for (int i = 0; i < len; ) {
+            final long relative = sorted[i] & mask;
+            if (fetch0(relative) == null) fresh++;
+            do i++; while (i < len && (sorted[i] & mask) == relative);
+        }
+        ensure0(occupied + fresh);
+
+        final long[] scratch = new long[1 << shift - 6];
+        final int old = size, words = scratch.length - 1;
+        for (int i = 0, j; i < len; i = j) {
+            final long relative = sorted[i] & mask;
+            int distinct = 1;
+            for (j = i + 1; j < len && (sorted[j] & mask) == relative; j++) {
+                if (sorted[j] != sorted[j - 1]) distinct++;
+            }
+            LongBitBucket bucket;
+            if (distinct > 16) {
+                // Too many for a hash bucket; skip straight to a bitset.
+                Arrays.fill(scratch, 0L);
+                for (int k = i; k < j; k++) scratch[(int) (sorted[k] >>> 6) & words] |= LongBitSetBucket.word(sorted[k]);
+                if ((bucket = fetch0(relative)) == null) {
+                    size += (bucket = insert1(create3(relative, scratch.clone()))).size();
+                } else if (bucket.size() != 1 << shift) {
+                    var bits = bits(bucket);
+                    size += bits.or(scratch);
+                    bucket = bits;
+                }
+            } else {
+                bucket = own(fetch(relative));
+                for (int k = i; k < j; k++) {
+                    final long l = sorted[k];
+                    if (!bucket.add(l)) {
+                        if (bucket.contains(l)) continue;
+                        (bucket = promote(bucket)).add(l);
+                    }
+                    size++;
+                }
+            }
+            fill(bucket);
+        }
+        return modified0(old);
+    }
+
+    /**
+     * Removes every long of the collection, ANDNOTing bucket by bucket if it's a {@link LongBitHashSet},
+     * otherwise removing each long of the collection when it's the smaller of the two,
+     * or filtering this set by {@link #removeIf(LongPredicate)} when it's not.
+     */
+    @Override
+    public boolean removeAll(LongCollection c) {
+        if (c instanceof LongBitHashSet && ((LongBitHashSet) c).shift == shift) {
+            return andNot((LongBitHashSet) c);
+        }
+        if (c.size() >= size) {
+            return removeIf(c::contains);
+        }
+        final int old = size;
+        for (var itr = c.iterator(); itr.hasNext(); ) {
+            if (remove0(itr.nextLong())) size--;
+        }
+        if (!modified0(old)) return false;
+        if (size < low) shrink0();
+        return true;
+    }
+
+    /**
+     * Retains only the longs of the collection, ANDing bucket by bucket if it's a {@link LongBitHashSet},
+     * otherwise filtering this set by {@link #removeIf(LongPredicate)}.
+     */
+    @Override
+    public boolean retainAll(LongCollection c) {
+        if (c instanceof LongBitHashSet && ((LongBitHashSet) c).shift == shift) {
+            return and((LongBitHashSet) c);
+        }
+        return removeIf(l -> !c.contains(l));
+    }
+
+    /**
+     * Removes every long matching the filter, walking each bucket over its own structure.
+     * <p>
+     * Bitsets gather the longs to remove a word at a time and clear them at once, hash buckets remove in place,
+     * while full and run buckets are only converted into bitsets once the filter first matches within them.
+     * Shared buckets are likewise only copied once something is removed from them.
+     *
+     * @param filter The filter to test each long against.
+     * @return true if this set was changed as a result.
+     */
+    @Override
+    public boolean removeIf(LongPredicate filter) {
+        Objects.requireNonNull(filter);
+        settle0();
+        final LongBitBucket[] buckets = this.buckets;
+        final int old = size;
+        LongBitBucket bucket;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((bucket = buckets[i]) != null && bucket.size() != 0) size -= removeIf0(bucket, filter);
+        }
+        if (!modified0(old)) return false;
+        if (size < low) shrink0();
+        return true;
+    }
+
+    /**
+     * Removes every long of the bucket matching the filter, copying or converting it within the directory
+     * on the first match only.
+     *
+     * @return The amount of longs removed.
+     */
+    private int removeIf0(LongBitBucket bucket, LongPredicate filter) {
+        if (bucket instanceof LongBitSetBucket) {
+            final long[] words = ((LongBitSetBucket) bucket).words;
+            final long relative = bucket.relative();
+            LongBitSetBucket bits = null;
+            for (int i = 0; i < words.length; i++) {
+                long clear = 0L;
+                for (long w = words[i]; w != 0; w &= w - 1) {
+                    final int bit = Long.numberOfTrailingZeros(w);
+                    if (filter.test(relative | (long) i << 6 | bit)) clear |= 1L << bit;
+                }
+                if (clear != 0L) {
+                    if (bits == null) bits = (LongBitSetBucket) own(bucket);
+                    bits.words[i] &= ~clear;
+                }
+            }
+            return bits == null ? 0 : -bits.resize0();
+        }
+        // Iterates the original bucket; copies and conversions keep to the same relative, so only the target moves.
+        LongBitBucket into = null;
+        int removed = 0;
+        long l;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+            if (!filter.test(l = bucket.rawGet(i))) continue;
+            if (into == null) into = hashed(bucket) ? own(bucket) : bits(bucket);
+            into.remove(l);
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Adds every long of the given set into this set, merging bucket by bucket.
+     *
+     * @param set The set to add from, of the same span.
+     * @return true if this set was changed as a result.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean or(LongBitHashSet set) {
+        if (set == this) return false;
+        final long[] scratch = scratch0(set);
+        final int old = size;
+        set.settle0();
+        for (var from : set.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = fetch0(from.relative());
+            if (into == null) {
+                size += insert1(from.copy()).size();
+            } else if (hashed(into) && hashed(from)) {
+                size += or0(own(into), from);
+            } else if (into.size() != 1 << shift) {
+                var bits = bits(into);
+                size += bits.or(words(from, scratch));
+                fill(bits);
+            }
+        }
+        return modified0(old);
+    }
+
+    /**
+     * Retains only the longs of this set that are also within the given set, intersecting bucket by bucket.
+     *
+     * @param set The set to intersect with, of the same span.
+     * @return true if this set was changed as a result.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean and(LongBitHashSet set) {
+        if (set == this) return false;
+        final long[] scratch = scratch0(set);
+        final int old = size;
+        settle0();
+        for (var into : buckets) {
+            if (into == null || into.size() == 0) continue;
+            var from = set.fetch0(into.relative());
+            if (from == null) {
+                size -= into.size();
+                if (!clear0(into)) replace0(create0(into.relative()), buckets);
+            } else if (hashed(into)) {
+                size += and0(own(into), from, true);
+            } else {
+                size += bits(into).and(words(from, scratch));
+            }
+        }
+        if (size < low) shrink0();
+        return modified0(old);
+    }
+
+    /**
+     * Removes every long of the given set from this set, subtracting bucket by bucket.
+     *
+     * @param set The set to subtract, of the same span.
+     * @return true if this set was changed as a result.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean andNot(LongBitHashSet set) {
+        if (set == this) {
+            boolean changed = size != 0;
+            clear();
+            return changed;
+        }
+        final long[] scratch = scratch0(set);
+        final int old = size;
+        set.settle0();
+        for (var from : set.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = fetch0(from.relative());
+            if (into == null) continue;
+            if (hashed(into)) {
+                size += and0(own(into), from, false);
+            } else {
+                size += bits(into).andNot(words(from, scratch));
+            }
+        }
+        if (size < low) shrink0();
+        return modified0(old);
+    }
+
+    /**
+     * Toggles every long of the given set within this set, leaving only the longs
+     * present in exactly one of either set, bucket by bucket.
+     *
+     * @param set The set to toggle with, of the same span.
+     * @return true if this set was changed as a result.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean xor(LongBitHashSet set) {
+        if (set == this) {
+            boolean changed = size != 0;
+            clear();
+            return changed;
+        }
+        final long[] scratch = scratch0(set);
+        final int old = size;
+        // Toggling may leave the size as is despite changing the longs.
+        modifications++;
+        set.settle0();
+        for (var from : set.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = fetch0(from.relative());
+            if (into == null) {
+                size += insert1(from.copy()).size();
+            } else if (hashed(into) && hashed(from)) {
+                size += xor0(own(into), from);
+            } else {
+                var bits = bits(into);
+                size += bits.xor(words(from, scratch));
+                fill(bits);
+            }
+        }
+        if (size < low) shrink0();
+        return modified0(old);
+    }
+
+    /**
+     * Creates a new set of the longs within either set.
+     *
+     * @return The union of both sets.
+     */
+    public static LongBitHashSet union(LongBitHashSet a, LongBitHashSet b) {
+        if (a.size < b.size) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        var set = new LongBitHashSet(a);
+        set.or(b);
+        return set;
+    }
+
+    /**
+     * Creates a new set of the longs within both sets.
+     *
+     * @return The intersection of both sets.
+     */
+    public static LongBitHashSet intersection(LongBitHashSet a, LongBitHashSet b) {
+        if (a.size > b.size) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        var set = new LongBitHashSet(a);
+        set.and(b);
+        return set;
+    }
+
+    /**
+     * Creates a new set of the longs within {@code a} but not within {@code b}.
+     *
+     * @return The difference of both sets.
+     */
+    public static LongBitHashSet difference(LongBitHashSet a, LongBitHashSet b) {
+        var set = new LongBitHashSet(a);
+        set.andNot(b);
+        return set;
+    }
+
+    /**
+     * Creates a new set of the longs within exactly one of either set.
+     *
+     * @return The symmetric difference of both sets.
+     */
+    public static LongBitHashSet symmetricDifference(LongBitHashSet a, LongBitHashSet b) {
+        if (a.size < b.size) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        var set = new LongBitHashSet(a);
+        set.xor(b);
+        return set;
+    }
+
+    /**
+     * Tests whether any long is within both sets, stopping at the first shared long.
+     * <p>
+     * Like {@link #intersectionSize(LongBitHashSet)}, this allocates nothing.
+     *
+     * @param set The set to test against, of the same span.
+     * @return true if the sets share at least one long.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean intersects(LongBitHashSet set) {
+        span0(set);
+        if (set == this) return size != 0;
+        final LongBitHashSet large = size < set.size ? set : this, small = large == this ? set : this;
+        small.settle0();
+        for (var from : small.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = large.fetch0(from.relative());
+            if (into != null && intersects0(into, from)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the longs within both sets without creating the intersection.
+     * <p>
+     * This walks the directory of the smaller set, probing the larger set per bucket. Bitsets are
+     * counted by popcount over the ANDed words, and everything else by probing the larger bucket
+     * with each long of the smaller bucket.
+     *
+     * @param set The set to intersect with, of the same span.
+     * @return The size of {@link #intersection(LongBitHashSet, LongBitHashSet)}.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public int intersectionSize(LongBitHashSet set) {
+        span0(set);
+        if (set == this) return size;
+        final LongBitHashSet large = size < set.size ? set : this, small = large == this ? set : this;
+        int n = 0;
+        small.settle0();
+        for (var from : small.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = large.fetch0(from.relative());
+            if (into != null) n += intersection0(into, from);
+        }
+        return n;
+    }
+
+    /**
+     * Counts the longs within either set without creating the union.
+     *
+     * @param set The set to unite with, of the same span.
+     * @return The size of {@link #union(LongBitHashSet, LongBitHashSet)}, which may exceed an int.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public long unionSize(LongBitHashSet set) {
+        return (long) size + set.size - intersectionSize(set);
+    }
+
+    /**
+     * Measures the Jaccard similarity of the sets, being the size of the intersection over the size of the union.
+     *
+     * @param set The set to compare with, of the same span.
+     * @return The similarity between 0 and 1 inclusive, with two empty sets being identical.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public double jaccard(LongBitHashSet set) {
+        final long intersection = intersectionSize(set), union = (long) size + set.size - intersection;
+        return union == 0 ? 1D : (double) intersection / union;
+    }
+
+    /**
+     * Tests whether every long of the given set is within this set, bucket by bucket,
+     * stopping at the first bucket that isn't covered.
+     *
+     * @param set The set to test for, of the same span.
+     * @return true if the given set is a subset of this set.
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    public boolean containsAll(LongBitHashSet set) {
+        span0(set);
+        if (set.size > size) return false;
+        set.settle0();
+        for (var from : set.buckets) {
+            if (from == null || from.size() == 0) continue;
+            var into = fetch0(from.relative());
+            if (into == null || into.size() < from.size() || intersection0(into, from) != from.size()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests bucket by bucket if it's a {@link LongBitHashSet} of the same span, otherwise long by long.
+     */
+    @Override
+    public boolean containsAll(LongCollection c) {
+        if (c instanceof LongBitHashSet && ((LongBitHashSet) c).shift == shift) {
+            return containsAll((LongBitHashSet) c);
+        }
+        return super.containsAll(c);
+    }
+
+    /**
+     * Counts the longs within both buckets of the same relative.
+     */
+    private static int intersection0(LongBitBucket a, LongBitBucket b) {
+        if (a instanceof LongBitSetBucket && b instanceof LongBitSetBucket) {
+            return LongBitWords.andCount(((LongBitSetBucket) a).words, ((LongBitSetBucket) b).words);
+        }
+        if (a instanceof LongBitFullBucket) return b.size();
+        if (b instanceof LongBitFullBucket) return a.size();
+        if (a.size() < b.size()) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        int n = 0;
+        for (int i = -1; (i = b.nextIndex(i)) >= 0; ) {
+            if (a.contains(b.rawGet(i))) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Tests whether any long is within both buckets of the same relative.
+     */
+    private static boolean intersects0(LongBitBucket a, LongBitBucket b) {
+        if (a instanceof LongBitSetBucket && b instanceof LongBitSetBucket) {
+            final long[] x = ((LongBitSetBucket) a).words, y = ((LongBitSetBucket) b).words;
+            for (int i = 0; i < x.length; i++) {
+                if ((x[i] & y[i]) != 0) return true;
+            }
+            return false;
+        }
+        if (a instanceof LongBitFullBucket) return b.size() != 0;
+        if (b instanceof LongBitFullBucket) return a.size() != 0;
+        if (a.size() < b.size()) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        for (int i = -1; (i = b.nextIndex(i)) >= 0; ) {
+            if (a.contains(b.rawGet(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the set as modified if the size differs, as is the case for operations that only add or only remove.
+     *
+     * @return true if the size differs.
+     */
+    private boolean modified0(int old) {
+        if (size == old) return false;
+        modifications++;
+        return true;
+    }
+
+    /**
+     * Allocates the scratch bitset for merging the given set into this set.
+     *
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    private long[] scratch0(LongBitHashSet set) {
+        span0(set);
+        return new long[1 << shift - 6];
+    }
+
+    /**
+     * @throws IllegalArgumentException When the set is of a different span.
+     */
+    private void span0(LongBitHashSet set) {
+        if (set.shift != shift) {
+            throw new IllegalArgumentException("Mismatched spans " + (1 << shift) + " and " + (1 << set.shift));
+        }
+    }
+
+    /**
+     * Whether the bucket is a hash bucket of any span.
+     */
+    private static boolean hashed(LongBitBucket bucket) {
+        return bucket instanceof LongBitHashBucket || bucket instanceof LongBitWideHashBucket;
+    }
+
+    /**
+     * Clears the bucket in place if it's owned by this set and is a hash or bitset bucket.
+     * Every other bucket is to be replaced within the directory instead, as full buckets are immutable.
+     *
+     * @return true if the bucket was cleared, false if it's to be replaced.
+     */
+    private static boolean clear0(LongBitBucket bucket) {
+        if (bucket.shared()) return false;
+        if (bucket instanceof LongBitHashBucket) ((LongBitHashBucket) bucket).clear();
+        else if (bucket instanceof LongBitWideHashBucket) ((LongBitWideHashBucket) bucket).clear();
+        else if (bucket instanceof LongBitSetBucket) ((LongBitSetBucket) bucket).clear();
+        else return false;
+        return true;
+    }
+
+    /**
+     * Fetches the bitset form of the bucket, converting into the scratch array if required.
+     */
+    private static long[] words(LongBitBucket bucket, long[] scratch) {
+        if (bucket instanceof LongBitSetBucket) {
+            return ((LongBitSetBucket) bucket).words;
+        }
+        final boolean full = bucket.size() == scratch.length << 6;
+        Arrays.fill(scratch, full ? -1L : 0L);
+        if (!full) LongBitSetBucket.copy0(bucket, scratch);
+        return scratch;
+    }
+
+    /**
+     * Fetches the bucket as a {@link LongBitSetBucket}, converting or copying it within the directory if required.
+     */
+    private LongBitSetBucket bits(LongBitBucket bucket) {
+        return bucket instanceof LongBitSetBucket ? (LongBitSetBucket) own(bucket) : create2(buckets, bucket);
+    }
+
+    /**
+     * Fetches the bucket in a form safe to modify in place, copying it within the directory if it's shared.
+     *
+     * @see LongBitBucket#shared()
+     */
+    private LongBitBucket own(LongBitBucket bucket) {
+        if (!bucket.shared()) return bucket;
+        var copy = bucket.copy();
+        replace0(copy, buckets);
+        return copy;
+    }
+
+    /**
+     * Adds every long of {@code from} into {@code into}, converting {@code into} on overflow.
+     *
+     * @return The change in size.
+     */
+    private int or0(LongBitBucket into, LongBitBucket from) {
+        final int old = into.size();
+        long l;
+        for (int i = -1; (i = from.nextIndex(i)) >= 0; ) {
+            if (!into.add(l = from.rawGet(i)) && !into.contains(l)) {
+                (into = create2(buckets, into)).add(l);
+            }
+        }
+        return into.size() - old;
+    }
+
+    /**
+     * Removes every long of {@code into} that either is or isn't within {@code from}.
+     *
+     * @param retain Whether to retain the longs within {@code from} instead of removing them.
+     * @return The change in size.
+     */
+    private static int and0(LongBitBucket into, LongBitBucket from, boolean retain) {
+        final int old = into.size();
+        long l;
+        for (int i = -1; (i = into.nextIndex(i)) >= 0; ) {
+            if (from.contains(l = into.rawGet(i)) != retain) into.remove(l);
+        }
+        return into.size() - old;
+    }
+
+    /**
+     * Toggles every long of {@code from} within {@code into}, converting {@code into} on overflow.
+     *
+     * @return The change in size.
+     */
+    private int xor0(LongBitBucket into, LongBitBucket from) {
+        final int old = into.size();
+        long l;
+        for (int i = -1; (i = from.nextIndex(i)) >= 0; ) {
+            if (!into.remove(l = from.rawGet(i)) && !into.add(l)) {
+                (into = create2(buckets, into)).add(l);
+            }
+        }
+        return into.size() - old;
+    }
+
+    /**
+     * Fetches or creates a bucket based on the given long.
+     *
+     * @param l The long to base the bucket off of.
+     * @return A memory-compressed bucket of longs.
+     */
+    private LongBitBucket fetch(long l) {
+        LongBitBucket bucket;
+        if ((bucket = fetch0(l)) == null) {
+            return create1(l);
+        }
+        return bucket;
+    }
+
+    /**
+     * Probes the directory for the bucket relative to the given long.
+     *
+     * @param l The long to base the bucket off of.
+     * @return The bucket relative to {@code l}, or null if there is none.
+     */
+    LongBitBucket fetch0(long l) {
+        if (stale) return fetch1(l);
+        final LongBitBucket[] buckets = this.buckets;
+        final int mask = buckets.length - 1;
+        final long relative = l & -1L << shift;
+        LongBitBucket bucket;
+        for (int i = index0(relative, buckets); (bucket = buckets[i]) != null; i = (i + 1) & mask) {
+            if (bucket.relative() == relative) return bucket;
+        }
+        return null;
+    }
+
+    /**
+     * Probes the directory like {@link #fetch0(long)}, stopping at the first stale slot as if it were null.
+     */
+    private LongBitBucket fetch1(long l) {
+        final LongBitBucket[] buckets = this.buckets;
+        final int[] stamps = this.stamps;
+        final int mask = buckets.length - 1, generation = this.generation;
+        final long relative = l & -1L << shift;
+        LongBitBucket bucket;
+        for (int i = index0(relative, buckets); (bucket = buckets[i]) != null && stamps[i] == generation; i = (i + 1) & mask) {
+            if (bucket.relative() == relative) return bucket;
+        }
+        return null;
+    }
+
+    /**
+     * Converts the bucket into a more general bucket within the directory.
+     *
+     * @param bucket The bucket that could not represent the result of an add or remove.
+     * @return The promoted bucket.
+     * @see LongBitBucket#promote()
+     */
+    private LongBitBucket promote(LongBitBucket bucket) {
+        var promoted = bucket.promote();
+        if (LongBitHashSetMetrics.ENABLED && promoted instanceof LongBitSetBucket) LongBitHashSetMetrics.bitSetPromotion();
+        replace0(promoted, buckets);
+        return promoted;
+    }
+
+    /**
+     * Converts the bucket into a {@link LongBitFullBucket} within the directory once every long is present.
+     * Wider spans have no full bucket, and are left as bitsets.
+     */
+    private void fill(LongBitBucket bucket) {
+        if (shift == 8 && bucket.size() == 256 && !(bucket instanceof LongBitFullBucket)) {
+            replace0(new LongBitFullBucket(bucket.relative()), buckets);
+        }
+    }
+
+    /**
+     * Creates a new {@link LongBitHashBucket} in the directory, growing the directory beforehand
+     * if the load factor would be exceeded.
+     *
+     * @param insert The long to base the new bucket off of.
+     * @return A new {@link LongBitHashBucket} based on {@code insert}.
+     */
+    private LongBitBucket create1(long insert) {
+        final long relative = insert & -1L << shift;
+        if (stale && occupied < threshold) {
+            // Clears and restamps a stale bucket of the same relative on first touch rather than allocating,
+            // moving it up into the first free slot if it sits further along the probe sequence.
+            final LongBitBucket[] buckets = this.buckets;
+            final int[] stamps = this.stamps;
+            final int mask = buckets.length - 1, generation = this.generation, i = free0(relative);
+            LongBitBucket bucket;
+            for (int j = i; (bucket = buckets[j]) != null; j = (j + 1) & mask) {
+                if (stamps[j] == generation || bucket.relative() != relative) continue;
+                if (!clear0(bucket)) break;
+                buckets[j] = null;
+                if (j != i && buckets[i] != null) buckets[i].release();
+                buckets[i] = bucket;
+                stamps[i] = generation;
+                occupied++;
+                structure++;
+                return bucket;
+            }
+        }
+        return insert1(create0(relative));
+    }
+
+    /**
+     * Creates an empty hash bucket of the set's span.
+     *
+     * @param relative The relative of the bucket, masked by the span.
+     */
+    private LongBitBucket create0(long relative) {
+        return shift == 8 ? new LongBitHashBucket(relative) : new LongBitWideHashBucket(relative, shift);
+    }
+
+    /**
+     * Creates a bitset bucket of the set's span over the given words.
+     *
+     * @param relative The relative of the bucket, masked by the span.
+     * @param words    The bitset of the bucket, {@code 1 << shift - 6} words.
+     */
+    private LongBitSetBucket create3(long relative, long[] words) {
+        return shift == 8 ? new LongBitSetBucket(relative, words) : new LongBitWideSetBucket(relative, words);
+    }
+
+    /**
+     * Inserts a bucket of a relative not yet present, growing the directory beforehand
+     * if the load factor would be exceeded.
+     *
+     * @param bucket The bucket to insert.
+     * @return The given bucket.
+     */
+    private LongBitBucket insert1(LongBitBucket bucket) {
+        if (occupied >= threshold) grow0();
+        if (stamps == null) {
+            insert0(bucket, buckets);
+        } else {
+            final int i = free0(bucket.relative());
+            if (buckets[i] != null) buckets[i].release();
+            buckets[i] = bucket;
+            stamps[i] = generation;
+        }
+        occupied++;
+        structure++;
+        return bucket;
+    }
+
+    /**
+     * Doubles the underlying array, rehashing the existing buckets in the process.
+     *
+     * @throws IllegalStateException When the directory is already at its maximum capacity and full.
+     */
+    private void grow0() {
+        final int length = buckets.length;
+        if (length >= MAXIMUM_CAPACITY) {
+            if (occupied >= length - 1) {
+                if (live0() >= occupied) ise0(length);
+                rehash0(length);
+            }
+            return;
+        }
+        // Reclaims the empty buckets in place of growing once they make up half of the directory's allowance.
+        rehash0(live0() <= threshold >>> 1 ? length : length << 1);
+    }
+
+    /**
+     * Shrinks the directory down to twice the length required to fit the remaining buckets,
+     * dropping empty buckets and demoting sparse buckets in the process.
+     */
+    private void shrink0() {
+        rehash0(Math.min(buckets.length, length0(2L * live0())));
+    }
+
+    /**
+     * Grows the underlying array at once such that the given amount of buckets fit without growing again,
+     * capped to {@link #MAXIMUM_CAPACITY}.
+     *
+     * @param expected The amount of buckets expected to be present.
+     */
+    private void ensure0(int expected) {
+        if (expected <= threshold) return;
+        final int length = length0(expected);
+        if (length > buckets.length) rehash0(length);
+    }
+
+    /**
+     * Rehashes the non-empty buckets into an array of the given length, demoting them where possible.
+     *
+     * @param length The length of the new array, must be a power of 2 fitting every non-empty bucket.
+     * @see #demote0(LongBitBucket, long[])
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    private void rehash0(int length) {
+        settle0();
+        final Object event = LongBitHashSetMetrics.ENABLED ? LongBitHashSetMetrics.rehashBegin() : null;
+        final LongBitBucket[] from = buckets, to;
+        try {
+            to = new LongBitBucket[length];
+        } catch (OutOfMemoryError oome) {
+            if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.failedGrow();
+            throw oome;
+        }
+        final long[] scratch = new long[4];
+        LongBitBucket bucket;
+        int n = 0;
+        for (int i = 0; i < from.length; i++) {
+            if ((bucket = from[i]) == null) continue;
+            if (bucket.size() == 0) {
+                bucket.release();
+                continue;
+            }
+            final LongBitBucket demoted = demote0(bucket, scratch);
+            if (demoted != bucket) bucket.release();
+            insert0(demoted, to);
+            n++;
+        }
+        if (n != occupied) structure++;
+        this.buckets = to;
+        if (stamps != null) {
+            // Every slot is fresh, so the generations may start over.
+            this.stamps = new int[length];
+            this.generation = 0;
+        }
+        this.occupied = n;
+        this.threshold = HashCommon.maxFill(length, Hash.DEFAULT_LOAD_FACTOR);
+        this.low = size >>> 2;
+        if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.rehashEnd(event, from.length, length, n);
+    }
+
+    /**
+     * Demotes the bucket, preferring a {@link LongBitRunBucket} for hash and bitset buckets
+     * whose longs form a few contiguous runs.
+     *
+     * @param scratch A 4 word scratch array for converting hash buckets.
+     * @see LongBitRunBucket#pack(long, long[])
+     * @see LongBitBucket#demote()
+     */
+    private LongBitBucket demote0(LongBitBucket bucket, long[] scratch) {
+        if (shift == 8 && (bucket instanceof LongBitHashBucket || bucket instanceof LongBitSetBucket)) {
+            var runs = LongBitRunBucket.pack(bucket.relative(), words(bucket, scratch));
+            if (runs != null) return runs;
+        }
+        return bucket.demote();
+    }
+
+    /**
+     * Counts the non-empty buckets within the directory.
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    private int live0() {
+        settle0();
+        final LongBitBucket[] buckets = this.buckets;
+        LongBitBucket bucket;
+        int n = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((bucket = buckets[i]) != null && bucket.size() != 0) n++;
+        }
+        return n;
+    }
+
+    /**
+     * Nulls out the stale slots of a scratch set, leaving only the buckets of the current generation.
+     * This is called before anything that walks the directory as a whole, costing no more than the walk itself.
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    private void settle0() {
+        if (!stale) return;
+        final LongBitBucket[] buckets = this.buckets;
+        final int[] stamps = this.stamps;
+        final int generation = this.generation;
+        LongBitBucket bucket;
+        for (int i = 0; i < buckets.length; i++) {
+            if (stamps[i] != generation && (bucket = buckets[i]) != null) {
+                bucket.release();
+                buckets[i] = null;
+            }
+        }
+        stale = false;
+    }
+
+    /**
+     * Releases every bucket held by the directory, stale or not, as the directory is about to be dropped.
+     *
+     * @see LongBitBucket#release()
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    private void release0() {
+        final LongBitBucket[] buckets = this.buckets;
+        LongBitBucket bucket;
+        for (int i = 0; i < buckets.length; i++) {
+            if ((bucket = buckets[i]) != null) bucket.release();
+        }
     }
 
-    @Override
-    public void clear() {
-        for (var bucket : buckets) {
-            if (bucket != null) bucket.clear();
-        }
-        size = 0;
+    /**
+     * Finds the first free slot of the relative's probe sequence within a scratch set, being either null or stale.
+     */
+    private int free0(long relative) {
+        final LongBitBucket[] buckets = this.buckets;
+        final int[] stamps = this.stamps;
+        final int mask = buckets.length - 1, generation = this.generation;
+        int i = index0(relative, buckets);
+        while (buckets[i] != null && stamps[i] == generation) i = (i + 1) & mask;
+        return i;
     }
 
-    @Override
-    public boolean add(long l) {
-        if (add0(l)) {
-            size++;
-            return true;
-        }
-        return false;
+    /**
+     * Fetches the directory length required to fit the given amount of buckets,
+     * no shorter than the initial length and capped to {@link #MAXIMUM_CAPACITY}.
+     */
+    private static int length0(long expected) {
+        return (int) Math.max(8, Math.min(MAXIMUM_CAPACITY,
+                HashCommon.nextPowerOfTwo((long) Math.ceil(expected / Hash.DEFAULT_LOAD_FACTOR))));
     }
 
-    private boolean add0(long l) {
-        return fetch(l).add(l) || grow(l).add(l);
+    private LongBitSetBucket create2(LongBitBucket[] to, LongBitBucket old) {
+        if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.bitSetPromotion();
+        var bucket = shift == 8 ? new LongBitSetBucket(old) : new LongBitWideSetBucket(old, shift);
+        replace0(bucket, to);
+        return bucket;
     }
 
-    @Override
-    public boolean contains(long l) {
-        var bucket = buckets[index(l)];
-        return bucket != null && bucket.contains(l);
+    /**
+     * Inserts the bucket into the first free slot of its probe sequence.
+     * The bucket's relative must not already be present.
+     */
+    private static void insert0(LongBitBucket bucket, LongBitBucket[] to) {
+        final int mask = to.length - 1;
+        int i = index0(bucket.relative(), to);
+        while (to[i] != null) i = (i + 1) & mask;
+        to[i] = bucket;
     }
 
-    @Override
-    public long[] toArray(long[] longs) {
-        if (longs == null || longs.length < size) longs = new long[size];
-        int i = LongIterators.unwrap(longIterator(), longs);
-        assert i == size : "Unexpected mismatch: expected " + size + " but got " + i + "!";
-        return longs;
+    /**
+     * Replaces the bucket of the same relative within the directory, releasing the old bucket.
+     * The bucket's relative must already be present.
+     */
+    private static void replace0(LongBitBucket bucket, LongBitBucket[] to) {
+        final int mask = to.length - 1;
+        final long relative = bucket.relative();
+        int i = index0(relative, to);
+        while (to[i].relative() != relative) i = (i + 1) & mask;
+        if (to[i] != bucket) to[i].release();
+        to[i] = bucket;
     }
 
-    @Override
-    public boolean remove(long l) {
-        if (remove0(l)) {
-            size--;
-            return true;
-        }
-        return false;
+    @Contract("_ -> fail")
+    private static void ise0(int length) {
+        if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.failedGrow();
+        throw new IllegalStateException("Unable to grow the directory beyond " + length + " buckets.");
     }
 
-    private boolean remove0(long l) {
-        var bucket = buckets[index(l)];
-        return bucket != null && bucket.remove(l);
+    @Contract("_ -> fail")
+    private void ise1(long dense) {
+        throw new IllegalStateException("Unable to freeze " + dense + " bitsets of " + (1 << shift) + " longs into a single array.");
     }
 
     /**
-     * Fetches or creates a bucket based on the given long.
+     * Fetches the hashed index from the given long.
+     * <p>
+     * The relative is mixed beforehand so that relatives differing only by
+     * their high bits do not pile up within the same probe sequence.
+     */
+    private static int index0(long l, LongBitBucket[] buckets) {
+        return (int) HashCommon.mix(l >>> 8) & (buckets.length - 1);
+    }
+
+    /**
+     * Writes the set in its raw structure, bucket by bucket.
+     * <p>
+     * The format is the magic {@code LBHS}, the version byte, the size as an int, the amount of buckets as an int,
+     * then the length of the buckets as a long, followed by each non-empty bucket as written by
+     * {@link LongBitBucket#write(DataOutput)}. All values are big-endian as per {@link DataOutput}.
+     * <p>
+     * Sets of a wider {@link Span} are written as version 2, with the shift of the span as a byte
+     * following the version.
      *
-     * @param l The long to base the bucket off of.
-     * @return A memory-compressed bucket of longs.
+     * @param out The output to write the set to.
+     * @throws IOException When the output fails to write.
      */
-    private LongBitBucket fetch(long l) {
-        LongBitBucket bucket;
-        if ((bucket = fetch0(l)) == null) {
-            return create1(buckets, l);
+    public void write(DataOutput out) throws IOException {
+        settle0();
+        int count = 0;
+        long length = 0;
+        for (var bucket : buckets) {
+            if (bucket == null || bucket.size() == 0) continue;
+            count++;
+            length += bucket.serializedSize();
         }
-        if (bucket.isRelative(l)) {
-            return bucket;
+        out.writeInt(MAGIC);
+        if (shift == 8) {
+            out.writeByte(VERSION);
+        } else {
+            out.writeByte(VERSION_SPAN);
+            out.writeByte(shift);
+        }
+        out.writeInt(size);
+        out.writeInt(count);
+        out.writeLong(length);
+        for (var bucket : buckets) {
+            if (bucket == null || bucket.size() == 0) continue;
+            bucket.write(out);
         }
-        return grow0(l);
     }
 
-    private LongBitBucket fetch0(long l) {
-        return buckets[index(l)];
+    /**
+     * Writes the set to the channel in the format of {@link #write(DataOutput)}.
+     * The channel is left open.
+     *
+     * @param channel The channel to write the set to.
+     * @throws IOException When the channel fails to write.
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 65536));
+        write((DataOutput) out);
+        out.flush();
     }
 
     /**
-     * Converts to a {@link LongBitSetBucket} when the bucket exists.
+     * Reads a set written by {@link #write(DataOutput)}, inserting the buckets directly into the directory.
      *
-     * @param l The long to base the bucket off of.
-     * @return A memory-compressed bucket of longs.
+     * @param in The input to read the set from.
+     * @return The set as written.
+     * @throws IOException When the input fails to read or is not a valid set.
      */
-    private LongBitBucket grow(long l) {
-        LongBitBucket bucket;
-        if ((bucket = fetch0(l)) instanceof LongBitHashBucket && !bucket.contains(l)) {
-            return create2(buckets, bucket);
+    public static LongBitHashSet read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a LongBitHashSet");
         }
-        return bucket;
+        final int version = in.readUnsignedByte();
+        final int shift = shift0(version, version == VERSION_SPAN ? in.readUnsignedByte() : 8);
+        int size = in.readInt(), count = in.readInt();
+        in.readLong();
+        return read0(in, size, count, shift);
     }
 
     /**
-     * Grows the underlying array, creating a new {@link LongBitHashBucket} in the process.
+     * Reads a set written by {@link #write(WritableByteChannel)}, never reading past the end of the set.
+     * The channel is left open.
      *
-     * @param insert The long to resolve the conflict of and insert into the hashset.
-     * @return A new {@link LongBitHashBucket} based on {@code insert}.
-     * @throws OutOfMemoryError When the conflict cannot be resolved by resizing.
+     * @param channel The channel to read the set from.
+     * @return The set as written.
+     * @throws IOException When the channel fails to read or is not a valid set.
      */
-    private LongBitBucket grow0(long insert) {
-        LongBitBucket[] old;
-        return create1(copy0(old = this.buckets, this.buckets = create0(old, insert)), insert);
-    }
-
-    private static LongBitBucket[] create0(LongBitBucket[] old, long insert) {
-        return new LongBitBucket[size0(insert, old[index0(insert, old)].relative())];
-    }
-
-    private static LongBitBucket create1(LongBitBucket[] to, long insert) {
-        var bucket = new LongBitHashBucket(insert & ~255);
-        // var bucket = new LongBitSetBucket(insert & ~255);
-        insert0(bucket, to);
-        return bucket;
-    }
-
-    private static LongBitSetBucket create2(LongBitBucket[] to, LongBitBucket old) {
-        var bucket = new LongBitSetBucket(old);
-        insert0(bucket, to);
-        return bucket;
+    public static LongBitHashSet read(ReadableByteChannel channel) throws IOException {
+        var header = ByteBuffer.allocate(21);
+        while (header.hasRemaining()) {
+            if (channel.read(header) < 0) throw new EOFException();
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a LongBitHashSet");
+        }
+        final int version = header.get() & 255;
+        if (version == VERSION_SPAN) {
+            // The shift pushes the rest of the header one byte further.
+            header.compact().limit(17);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) throw new EOFException();
+            }
+            header.flip();
+        }
+        final int shift = shift0(version, version == VERSION_SPAN ? header.get() & 255 : 8);
+        int size = header.getInt(), count = header.getInt();
+        long length = header.getLong();
+        var in = new DataInputStream(new BufferedInputStream(new BoundedInputStream(Channels.newInputStream(channel), length), 65536));
+        return read0(in, size, count, shift);
     }
 
-    @SuppressWarnings("ForLoopReplaceableByForEach")
-    private static LongBitBucket[] copy0(LongBitBucket[] from, LongBitBucket[] to) {
-        LongBitBucket bucket;
-        for (int i = 0; i < from.length; i++) {
-            if ((bucket = from[i]) != null) insert0(bucket, to);
+    /**
+     * Validates the version and the shift of the span following it.
+     *
+     * @param version The version as read.
+     * @param shift   The shift as read, or 8 for version 1.
+     * @return The shift of the span.
+     * @throws IOException When the version or span is unsupported.
+     */
+    private static int shift0(int version, int shift) throws IOException {
+        if (version != VERSION && version != VERSION_SPAN) {
+            throw new IOException("Unsupported version " + version);
         }
-        return to;
+        if (shift != 8 && shift != 12 && shift != 16) {
+            throw new IOException("Unsupported span shift " + shift);
+        }
+        return shift;
     }
 
-    private static void insert0(LongBitBucket bucket, LongBitBucket[] to) {
-        to[index0(bucket.relative(), to)] = bucket;
+    private static LongBitHashSet read0(DataInput in, int size, int count, int shift) throws IOException {
+        if (size < 0 || count < 0 || count > HashCommon.maxFill(MAXIMUM_CAPACITY, Hash.DEFAULT_LOAD_FACTOR)) {
+            throw new IOException("Invalid size " + size + " or bucket count " + count);
+        }
+        var set = new LongBitHashSet(Math.max(8, HashCommon.arraySize(count, Hash.DEFAULT_LOAD_FACTOR)), shift);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            var bucket = read1(in, shift);
+            if (set.fetch0(bucket.relative()) != null) {
+                throw new IOException("Duplicate bucket " + bucket.relative());
+            }
+            insert0(bucket, set.buckets);
+            total += bucket.size();
+        }
+        if (total != size) {
+            throw new IOException("Expected " + size + " longs but got " + total);
+        }
+        set.occupied = count;
+        set.size = size;
+        return set;
     }
 
     /**
-     * This attempts to resolve the required size by xoring the colliding bucket's relative
-     * and the new long's high 56 bits, getting the lowest bit of the high 56 bits, then
-     * bound-checking by converting to an integer then checking if it's less than or equal to zero.
+     * Reads a {@link LongBitBucket} written by {@link LongBitBucket#write(DataOutput)}.
      *
-     * @param insert   The long to resolve the size conflict of.
-     * @param relative The long to resolve the size conflict against.
-     * @return The required size of the array, always positive.
-     * @throws OutOfMemoryError When the conflict cannot be resolved by resizing.
+     * @param in    The input to read the bucket from.
+     * @param shift The amount of low bits held by each bucket of the set.
+     * @return {@link LongBitHashBucket}, {@link LongBitSetBucket}, {@link LongBitFullBucket}
+     * or {@link LongBitRunBucket} based on the type, or for wider spans,
+     * {@link LongBitWideHashBucket} or {@link LongBitWideSetBucket}.
+     * @throws IOException When there's no bucket corresponding to the type and span, or the input fails to read.
      */
-    private static int size0(long insert, long relative) {
-        int newSize;
-        if ((newSize = (int) (Long.lowestOneBit((insert ^ relative) >>> 8) << 1)) <= 0)
-            oome0(insert, relative);
-        return newSize;
-    }
-
-    @Contract("_, _ -> fail")
-    private static void oome0(long insert, long relative) {
-        throw new OutOfMemoryError("Unable to insert " + insert + " as it collides with " + relative + " in a non-resolvable manner.");
+    private static LongBitBucket read1(DataInput in, int shift) throws IOException {
+        byte type = in.readByte();
+        long relative = in.readLong();
+        if ((relative & ~(-1L << shift)) != 0) {
+            throw new IOException("Invalid relative " + relative);
+        }
+        if (shift != 8) {
+            switch (type) {
+                case LongBitWideHashBucket.TYPE:
+                    return LongBitWideHashBucket.read(relative, shift, in);
+                case LongBitWideSetBucket.TYPE:
+                    return LongBitWideSetBucket.read(relative, shift, in);
+                default:
+                    throw new IOException("Unknown bucket type " + type + " for span " + (1 << shift));
+            }
+        }
+        switch (type) {
+            case LongBitHashBucket.TYPE:
+                return LongBitHashBucket.read(relative, in);
+            case LongBitSetBucket.TYPE:
+                return LongBitSetBucket.read(relative, in);
+            case LongBitFullBucket.TYPE:
+                return new LongBitFullBucket(relative);
+            case LongBitRunBucket.TYPE:
+                return LongBitRunBucket.read(relative, in);
+            default:
+                throw new IOException("Unknown bucket type " + type);
+        }
     }
 
     /**
-     * Fetches the hashed index from the given long.
+     * Limits the underlying stream to the given length, preventing buffering from reading past the set.
      */
-    private int index(long l) {
-        return index0(l, buckets);
-    }
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
 
-    private static int index0(long l, LongBitBucket[] buckets) {
-        return (int) (l >>> 8) & (buckets.length - 1);
-    }
-
-    /**
-     * Converts the long set into an NBT compound, storing the internal structure in a raw form.
-     * */
-    //public NbtCompound toNbt() {
-    //    var buckets = this.buckets;
-    //    var list = new NbtCompound();
-    //    list.putInt("size", size);
-    //    list.putInt("arr", buckets.length);
-    //    for(int i = 0, l = buckets.length; i < l; i++) {
-    //        if(buckets[i] != null) {
-    //            list.put(Integer.toString(i), buckets[i].toNbt());
-    //        }
-    //    }
-    //    return list;
-    //}
-
-    /**
-     * Constructs a long set based off the internal structure stored in the NBT compound.
-     *
-     * @param list The NBT Compound storing the set.
-     * @return A long set based off the stored NBT.
-     * */
-    //public static LongBitHashSet fromNbt(NbtCompound list) {
-    //    var set = new LongBitHashSet();
-    //    set.size = list.getInt("size");
-    //    var buckets = set.buckets = new LongBitBucket[list.getInt("arr")];
-    //    list.getKeys().stream().filter(StringUtils::isNumeric).sorted().forEachOrdered(str -> buckets[Integer.parseInt(str)] = fromNbt0(list.getCompound(str)));
-    //    return set;
-    //}
-
-    /**
-     * Constructs a {@link LongBitBucket} based off the internal structure stored in the NBT compound.
-     *
-     * @param compound The NBT Compound storing the bucket.
-     * @return {@link LongBitHashBucket} or {@link LongBitSetBucket} based on the internal structure.
-     * @throws IllegalArgumentException When there's no bucket corresponding to the structure.
-     * */
-    //private static LongBitBucket fromNbt0(NbtCompound compound) {
-    //    if(compound.contains("a", NbtElement.BYTE_ARRAY_TYPE)) {
-    //        return new LongBitHashBucket(compound.getLong("r"), compound.getByteArray("a"));
-    //    } else if(compound.contains("w", NbtElement.LONG_ARRAY_TYPE)) {
-    //        return new LongBitSetBucket(compound.getLong("r"), compound.getLongArray("w"));
-    //    }
-    //    throw new IllegalArgumentException("unknown type");
-    //}
+        BoundedInputStream(InputStream in, long remaining) {
+            super(in);
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int r;
+            if ((r = super.read()) >= 0) remaining--;
+            return r;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int r;
+            if ((r = super.read(b, off, (int) Math.min(len, remaining))) > 0) remaining -= r;
+            return r;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long r = super.skip(Math.min(n, remaining));
+            remaining -= r;
+            return r;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
 
     class j$itr2 implements LongIterator {
         /**
@@ -310,6 +1938,24 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
             return true;
         }
 
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            final int b = bucket;
+            if (b < 0) {
+                return;
+            }
+            final LongBitBucket[] buckets = this.buckets;
+            var bucket = buckets[b];
+            int i = bucketIndexNext > bucketIndex ? bucketIndexNext : bucket.nextIndex(bucketIndex);
+            this.bucket = -1;
+            bucketIndexNext = bucketIndex;
+            for (; i >= 0; i = bucket.nextIndex(i)) action.accept(bucket.rawGet(i));
+            for (int j = b + 1, l = buckets.length; j < l; j++) {
+                if ((bucket = buckets[j]) != null) bucket.forEach(action);
+            }
+        }
+
         @Override
         public String toString() {
             return "j$itr2{" +
@@ -325,9 +1971,11 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
      * Long iterator adapted for the bucket-based approach of the {@link LongBitHashSet}.
      */
     static class j$itr implements LongIterator {
+        private final LongBitHashSet set;
         private final LongBitBucket[] buckets;
-        boolean peeked;
+        boolean peeked, removable;
         int bucket = -1, bucketIndex = -1, bucketLongs;
+        private long last;
 
         /**
          * Keeps an independent reference of the buckets to try to guarantee that
@@ -335,10 +1983,11 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
          * <p>
          * This will also attempt to advance the bucket to the next valid state if possible.
          *
-         * @param buckets The internal bucket array from {@link LongBitHashSet#buckets}.
+         * @param set The set to iterate over, and to remove from.
          */
-        j$itr(LongBitBucket[] buckets) {
-            this.buckets = buckets;
+        j$itr(LongBitHashSet set) {
+            this.set = set;
+            this.buckets = set.buckets;
             // Forces iterator to not be at a potentially invalid state.
             advanceBucket(true);
         }
@@ -354,7 +2003,51 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
             }
             bucketLongs++;
             peeked = false;
-            return bucket.rawGet(bucketIndex);
+            removable = true;
+            return last = bucket.rawGet(bucketIndex);
+        }
+
+        /**
+         * Removes the last long from the set without shrinking it, such that the directory stays in place.
+         * <p>
+         * Any copy or conversion of the current bucket is swapped into the same slot, and keeps the same indices,
+         * so the iterator carries on from the replacement as if nothing happened.
+         */
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            set.remove1(last);
+            bucketLongs--;
+        }
+
+        /**
+         * Finishes the current bucket through its index, then hands each remaining bucket the action.
+         */
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            Objects.requireNonNull(action);
+            final int b = bucket;
+            if (b < 0) {
+                return;
+            }
+            final LongBitBucket[] buckets = this.buckets;
+            var bucket = buckets[b];
+            int i = bucketIndex;
+            final boolean peeked = this.peeked;
+            this.bucket = -1;
+            this.peeked = false;
+            removable = false;
+            // A peeked index of -1 means the bucket was skipped past entirely.
+            if (bucket != null && (!peeked || i >= 0)) {
+                if (peeked) action.accept(bucket.rawGet(i));
+                while ((i = bucket.nextIndex(i)) >= 0) action.accept(bucket.rawGet(i));
+            }
+            for (int j = b + 1, l = buckets.length; j < l; j++) {
+                if ((bucket = buckets[j]) != null) bucket.forEach(action);
+            }
         }
 
         /**
@@ -367,6 +2060,7 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
         @Override
         public int skip(int n) {
             int ni = n, r = 0;
+            removable = false;
             var bucket = buckets[this.bucket];
             while (isInvalid(bucket) || (r = bucket.size() - bucketLongs) >= ni) {
                 bucket = advanceBucket(true);
@@ -465,4 +2159,269 @@ public class LongBitHashSet extends AbstractLongSet implements LongSet {
             return bucket != null;
         }
     }
+
+    /**
+     * Long spliterator splitting over ranges of the directory.
+     * <p>
+     * Each split is sized exactly by summing the sizes of the buckets within the prefix,
+     * keeping the spliterator {@link Spliterator#SIZED SIZED} and {@link Spliterator#SUBSIZED SUBSIZED}
+     * for as long as the set isn't modified.
+     */
+    static class j$spltr implements LongSpliterator {
+        private final LongBitBucket[] buckets;
+        private int slot;
+        private final int fence;
+        private long remaining;
+        /**
+         * The bucket currently being advanced through by {@link #tryAdvance(LongConsumer)}, and where within.
+         */
+        private LongBitBucket bucket;
+        private int index;
+
+        /**
+         * @param buckets   The internal bucket array from {@link LongBitHashSet#buckets}.
+         * @param slot      The first slot to cover, inclusive.
+         * @param fence     The last slot to cover, exclusive.
+         * @param remaining The amount of longs within the covered slots.
+         */
+        j$spltr(LongBitBucket[] buckets, int slot, int fence, long remaining) {
+            this.buckets = buckets;
+            this.slot = slot;
+            this.fence = fence;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            LongBitBucket bucket = this.bucket;
+            int i = index;
+            while (bucket == null || (i = bucket.nextIndex(i)) < 0) {
+                if (slot >= fence) {
+                    this.bucket = null;
+                    return false;
+                }
+                bucket = buckets[slot++];
+                i = -1;
+            }
+            this.bucket = bucket;
+            index = i;
+            remaining--;
+            action.accept(bucket.rawGet(i));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            LongBitBucket bucket = this.bucket;
+            if (bucket != null) {
+                this.bucket = null;
+                for (int i = index; (i = bucket.nextIndex(i)) >= 0; ) action.accept(bucket.rawGet(i));
+            }
+            final LongBitBucket[] buckets = this.buckets;
+            final int fence = this.fence;
+            int i = slot;
+            slot = fence;
+            remaining = 0;
+            for (; i < fence; i++) {
+                if ((bucket = buckets[i]) != null) bucket.forEach(action);
+            }
+        }
+
+        /**
+         * Splits off the lower half of the remaining slots, leaving any bucket
+         * partially advanced through with this spliterator.
+         */
+        @Override
+        public LongSpliterator trySplit() {
+            final int lo = slot, mid = (lo + fence) >>> 1;
+            if (mid <= lo) {
+                return null;
+            }
+            final LongBitBucket[] buckets = this.buckets;
+            LongBitBucket bucket;
+            long s = 0;
+            for (int i = lo; i < mid; i++) {
+                if ((bucket = buckets[i]) != null) s += bucket.size();
+            }
+            slot = mid;
+            remaining -= s;
+            return new j$spltr(buckets, lo, mid, s);
+        }
+
+        @Override
+        public long estimateSize() {
+            return remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
+
+    /**
+     * The amount of longs held by each bucket of a set, fixed at construction.
+     * <p>
+     * Wider spans suit dense sets with few, clustered relatives, as a single bucket and directory slot
+     * then covers what would otherwise be 16 or 256 of them. Sparse sets are better off at the default,
+     * as a bucket that outgrows its hash array costs a bitset of the whole span.
+     * Sets of differing spans may only be combined long by long.
+     *
+     * @see LongBitHashSet#LongBitHashSet(Span)
+     */
+    public enum Span {
+        /**
+         * 256 longs per bucket, the default.
+         */
+        S256(8),
+        /**
+         * 4096 longs per bucket, with a 512 byte bitset once dense.
+         */
+        S4096(12),
+        /**
+         * 65536 longs per bucket, with an 8 KiB bitset once dense.
+         */
+        S65536(16);
+
+        /**
+         * The amount of low bits held by each bucket.
+         */
+        final int shift;
+
+        Span(int shift) {
+            this.shift = shift;
+        }
+
+        /**
+         * The amount of longs held by each bucket.
+         */
+        public int longs() {
+            return 1 << shift;
+        }
+    }
+
+    /**
+     * Snapshot of the shape of a {@link LongBitHashSet}, as taken by {@link LongBitHashSet#stats()}.
+     */
+    public static final class Stats {
+        private final int size, length, occupied, hash, set, full, run;
+        private final int[] sizes, lengths;
+        private final long bytes;
+
+        Stats(int size, int length, int occupied, int hash, int set, int full, int run,
+              int[] sizes, int[] lengths, long bytes) {
+            this.size = size;
+            this.length = length;
+            this.occupied = occupied;
+            this.hash = hash;
+            this.set = set;
+            this.full = full;
+            this.run = run;
+            this.sizes = sizes;
+            this.lengths = lengths;
+            this.bytes = bytes;
+        }
+
+        /**
+         * The amount of longs within the set.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * The length of the directory.
+         */
+        public int directoryLength() {
+            return length;
+        }
+
+        /**
+         * The amount of occupied slots within the directory, including empty buckets yet to be reclaimed.
+         */
+        public int occupied() {
+            return occupied;
+        }
+
+        /**
+         * The amount of {@link LongBitHashBucket hash buckets}.
+         */
+        public int hashBuckets() {
+            return hash;
+        }
+
+        /**
+         * The amount of {@link LongBitSetBucket bitset buckets}.
+         */
+        public int bitSetBuckets() {
+            return set;
+        }
+
+        /**
+         * The amount of {@link LongBitFullBucket full buckets}.
+         */
+        public int fullBuckets() {
+            return full;
+        }
+
+        /**
+         * The amount of {@link LongBitRunBucket run buckets}.
+         */
+        public int runBuckets() {
+            return run;
+        }
+
+        /**
+         * The amount of empty buckets yet to be reclaimed.
+         */
+        public int emptyBuckets() {
+            return sizes[0];
+        }
+
+        /**
+         * The amount of buckets holding exactly the given amount of longs.
+         *
+         * @param size The amount of longs, between 0 and the span inclusive.
+         */
+        public int bucketsOfSize(int size) {
+            return size < 0 || size >= sizes.length ? 0 : sizes[size];
+        }
+
+        /**
+         * The amount of hash buckets with a hash array of the given length.
+         *
+         * @param length The length of the hash array, being 4, 8 or 16, or any power of two
+         *               up to a sixteenth of the span for wider spans.
+         */
+        public int hashBucketsOfLength(int length) {
+            return length < 0 || length >= lengths.length ? 0 : lengths[length];
+        }
+
+        /**
+         * The estimated amount of bytes retained by the set, assuming a 64-bit JVM with compressed oops.
+         */
+        public long estimatedBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            final var lengths = new StringBuilder();
+            for (int i = 4; i < this.lengths.length; i <<= 1) {
+                lengths.append(i == 4 ? " (" : ", ").append(i).append('=').append(this.lengths[i]);
+            }
+            return "Stats{" +
+                    "size=" + size +
+                    ", directoryLength=" + length +
+                    ", occupied=" + occupied +
+                    ", hashBuckets=" + hash +
+                    lengths + ')' +
+                    ", bitSetBuckets=" + set +
+                    ", fullBuckets=" + full +
+                    ", runBuckets=" + run +
+                    ", emptyBuckets=" + sizes[0] +
+                    ", estimatedBytes=" + bytes +
+                    '}';
+        }
+    }
 }
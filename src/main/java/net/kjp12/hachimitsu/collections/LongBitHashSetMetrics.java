@@ -0,0 +1,105 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T18:22:05
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional counters of the structural events of every {@link LongBitHashSet}, for diagnosing latency spikes.
+ * <p>
+ * Disabled by default, enabled by setting the system property {@value #PROPERTY} to {@code true} before
+ * the class is initialised. As the flag is a constant, the JIT folds away every call site when disabled.
+ * <p>
+ * When enabled and JFR is available, every rehash of the directory also emits a
+ * {@code net.kjp12.hachimitsu.collections.Rehash} event recording the old and new length and duration.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+public final class LongBitHashSetMetrics {
+    /**
+     * The system property enabling the counters and events.
+     */
+    public static final String PROPERTY = "net.kjp12.hachimitsu.collections.metrics";
+    static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+    /**
+     * Whether to emit JFR events, only if the {@code jdk.jfr} module is present to avoid linking against it otherwise.
+     */
+    private static final boolean JFR = ENABLED && ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+    private static final LongAdder GROWS = new LongAdder();
+    private static final LongAdder RESIZES = new LongAdder();
+    private static final LongAdder PROMOTIONS = new LongAdder();
+    private static final LongAdder FAILURES = new LongAdder();
+
+    private LongBitHashSetMetrics() {
+    }
+
+    /**
+     * Whether the counters are enabled.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * The amount of times a directory was grown.
+     */
+    public static long directoryGrows() {
+        return GROWS.sum();
+    }
+
+    /**
+     * The amount of times a {@link LongBitHashBucket} grew its hash array.
+     */
+    public static long hashResizes() {
+        return RESIZES.sum();
+    }
+
+    /**
+     * The amount of times a bucket was converted into a {@link LongBitSetBucket}.
+     */
+    public static long bitSetPromotions() {
+        return PROMOTIONS.sum();
+    }
+
+    /**
+     * The amount of times a directory failed to grow, either by reaching its maximum capacity or running out of memory.
+     */
+    public static long failedGrows() {
+        return FAILURES.sum();
+    }
+
+    /**
+     * Resets every counter back to 0.
+     */
+    public static void reset() {
+        GROWS.reset();
+        RESIZES.reset();
+        PROMOTIONS.reset();
+        FAILURES.reset();
+    }
+
+    /**
+     * Begins timing a rehash.
+     *
+     * @return The event to pass to {@link #rehashEnd(Object, int, int, int)}, typed as Object to avoid linking JFR.
+     */
+    static Object rehashBegin() {
+        return JFR ? LongBitHashSetRehashEvent.begin0() : null;
+    }
+
+    static void rehashEnd(Object event, int oldLength, int newLength, int buckets) {
+        if (newLength > oldLength) GROWS.increment();
+        if (event != null) ((LongBitHashSetRehashEvent) event).commit0(oldLength, newLength, buckets);
+    }
+
+    static void hashResize() {
+        RESIZES.increment();
+    }
+
+    static void bitSetPromotion() {
+        PROMOTIONS.increment();
+    }
+
+    static void failedGrow() {
+        FAILURES.increment();
+    }
+}
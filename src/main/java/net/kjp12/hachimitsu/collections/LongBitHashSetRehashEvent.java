@@ -0,0 +1,45 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T18:40:51
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a {@link LongBitHashSet} rehashing its directory, be it growing, reclaiming or shrinking.
+ * <p>
+ * Only ever loaded through {@link LongBitHashSetMetrics} when enabled and JFR is present.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+@Name("net.kjp12.hachimitsu.collections.Rehash")
+@Label("LongBitHashSet Rehash")
+@Category({"Hachimitsu", "Collections"})
+@Description("Rehash of a LongBitHashSet's directory of buckets")
+final class LongBitHashSetRehashEvent extends Event {
+    @Label("Old Length")
+    int oldLength;
+    @Label("New Length")
+    int newLength;
+    @Label("Buckets")
+    @Description("Non-empty buckets carried over into the new directory")
+    int buckets;
+
+    static LongBitHashSetRehashEvent begin0() {
+        var event = new LongBitHashSetRehashEvent();
+        event.begin();
+        return event;
+    }
+
+    void commit0(int oldLength, int newLength, int buckets) {
+        end();
+        if (shouldCommit()) {
+            this.oldLength = oldLength;
+            this.newLength = newLength;
+            this.buckets = buckets;
+            commit();
+        }
+    }
+}
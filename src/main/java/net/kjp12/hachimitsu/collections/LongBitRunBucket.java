@@ -0,0 +1,294 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T14:52:07
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * A bucket of up to {@link #MAX_RUNS} contiguous runs of longs, packed into a single long.
+ * <p>
+ * Each run takes 16 bits, the least significant 8 being the inclusive start and the most
+ * significant 8 being the inclusive end. The runs are sorted, and never touch nor overlap.
+ * <p>
+ * Besides splitting off of a {@link LongBitFullBucket}, hash and bitset buckets are packed into runs
+ * when rehashed, if their longs form few enough runs.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+class LongBitRunBucket extends LongBitBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 3;
+    /**
+     * The maximum amount of runs that can be packed.
+     */
+    static final int MAX_RUNS = 4;
+    private long runs;
+    private int count;
+
+    LongBitRunBucket(long relative) {
+        super(relative, 0);
+    }
+
+    /**
+     * Constructs the bucket with the given packed runs. The size is recalculated on creation.
+     *
+     * @param relative The long to construct longs from. Assumed to be & ~255
+     * @param runs     The runs packed as described by the class.
+     * @param count    The amount of runs packed.
+     */
+    LongBitRunBucket(long relative, long runs, int count) {
+        super(relative, count(runs, count));
+        this.runs = runs;
+        this.count = count;
+    }
+
+    /**
+     * Packs the bitset into runs, as long as the longs form few enough runs to be worth it.
+     *
+     * @param relative The long to construct longs from. Assumed to be & ~255
+     * @param words    The 4 words of the bitset.
+     * @return The packed bucket, or null if there's more than {@link #MAX_RUNS} runs, or every run is a single long.
+     */
+    static LongBitRunBucket pack(long relative, long[] words) {
+        long runs = 0L;
+        int count = 0, size = 0;
+        for (int s = next(words, 0, true), e; s < 256; s = next(words, e + 1, true)) {
+            if (count == MAX_RUNS) return null;
+            e = next(words, s, false) - 1;
+            runs |= (long) (s | e << 8) << (count++ << 4);
+            size += e - s + 1;
+        }
+        return size > count ? new LongBitRunBucket(relative, runs, count) : null;
+    }
+
+    /**
+     * Fetches the next index at or after b that is either set or clear, or 256 if there's none.
+     */
+    private static int next(long[] words, int b, boolean set) {
+        long w;
+        for (int i = b >>> 6; i < 4; b = ++i << 6) {
+            if ((w = (set ? words[i] : ~words[i]) & (-1L << b)) != 0) return i << 6 | Long.numberOfTrailingZeros(w);
+        }
+        return 256;
+    }
+
+    private static int count(long runs, int count) {
+        int size = 0;
+        for (int k = 0; k < count; k++) size += end(runs, k) - start(runs, k) + 1;
+        return size;
+    }
+
+    @Override
+    boolean contains(long l) {
+        if (!isRelative(l)) return false;
+        final int b = (int) l & 255;
+        for (int k = 0, n = count; k < n; k++) {
+            if (b < start(runs, k)) return false;
+            if (b <= end(runs, k)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean remove(long l) {
+        if (isRelative(l) && remove0((int) l & 255)) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the index from the runs, shrinking or splitting the run containing it.
+     *
+     * @return true if removed, false if not present or splitting would exceed {@link #MAX_RUNS}.
+     */
+    private boolean remove0(int b) {
+        final long runs = this.runs;
+        for (int k = 0, n = count, s, e; k < n; k++) {
+            if (b < (s = start(runs, k))) return false;
+            if (b > (e = end(runs, k))) continue;
+            if (s == e) {
+                delete(k);
+            } else if (b == s) {
+                set(k, s + 1, e);
+            } else if (b == e) {
+                set(k, s, e - 1);
+            } else {
+                if (n == MAX_RUNS) return false;
+                set(k, s, b - 1);
+                insert(k + 1, b + 1, e);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    boolean add(long l) {
+        if (isRelative(l) && add0((int) l & 255)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the index into the runs, extending or merging runs where possible.
+     *
+     * @return true if added, false if already present or a new run would exceed {@link #MAX_RUNS}.
+     */
+    private boolean add0(int b) {
+        final long runs = this.runs;
+        int k = 0;
+        for (int n = count, s, e; k < n; k++) {
+            if (b < (s = start(runs, k)) - 1) break;
+            e = end(runs, k);
+            if (b == s - 1) {
+                set(k, b, e);
+                return true;
+            }
+            if (b <= e) return false;
+            if (b == e + 1) {
+                if (k + 1 < n && start(runs, k + 1) == b + 1) {
+                    set(k, s, end(runs, k + 1));
+                    delete(k + 1);
+                } else {
+                    set(k, s, b);
+                }
+                return true;
+            }
+        }
+        if (count == MAX_RUNS) return false;
+        insert(k, b, b);
+        return true;
+    }
+
+    @Override
+    LongBitRunBucket copy() {
+        return new LongBitRunBucket(relative, runs, count);
+    }
+
+    /**
+     * Converts into a {@link LongBitSetBucket} as there's no room for another run.
+     */
+    @Override
+    LongBitSetBucket promote() {
+        return new LongBitSetBucket(this);
+    }
+
+    @Override
+    long rawGet(int i) {
+        return relative | i;
+    }
+
+    @Override
+    void forEach(LongConsumer consumer) {
+        final long runs = this.runs, relative = this.relative;
+        for (int k = 0, n = count; k < n; k++) {
+            for (int i = start(runs, k), e = end(runs, k); i <= e; i++) consumer.accept(relative | i);
+        }
+    }
+
+    @Override
+    int nextIndex(int i) {
+        final long runs = this.runs;
+        i++;
+        for (int k = 0, n = count; k < n; k++) {
+            if (i <= end(runs, k)) return Math.max(i, start(runs, k));
+        }
+        return -1;
+    }
+
+    @Override
+    int nextIndex(int i, int s) {
+        final long runs = this.runs;
+        i++;
+        for (int k = 0, n = count, e; k < n; k++) {
+            if (i > (e = end(runs, k))) continue;
+            if ((i = Math.max(i, start(runs, k)) + s) <= e) return i;
+            s = i - e - 1;
+            i = e + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 12 byte header, relative, size, runs and count, aligned to 8.
+     */
+    @Override
+    int footprint() {
+        return 40;
+    }
+
+    @Override
+    int serializedSize() {
+        return 18;
+    }
+
+    @Override
+    void write(DataOutput out) throws IOException {
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+        out.writeByte(count);
+        out.writeLong(runs);
+    }
+
+    /**
+     * Reads the packed runs written by {@link #write(DataOutput)}, after the type and relative.
+     *
+     * @param relative The relative already read.
+     * @param in       The input to read the runs from.
+     * @return The bucket as written.
+     * @throws IOException When the input fails to read, or the runs are not sorted and apart.
+     */
+    static LongBitRunBucket read(long relative, DataInput in) throws IOException {
+        final int count = in.readUnsignedByte();
+        final long runs = in.readLong();
+        if (count > MAX_RUNS || count < MAX_RUNS && runs >>> (count << 4) != 0) {
+            throw new IOException("Invalid run count " + count);
+        }
+        for (int k = 0, p = -2; k < count; p = end(runs, k++)) {
+            if (start(runs, k) <= p + 1 || start(runs, k) > end(runs, k)) {
+                throw new IOException("Runs are not sorted and apart at " + k);
+            }
+        }
+        return new LongBitRunBucket(relative, runs, count);
+    }
+
+    private void set(int k, int s, int e) {
+        final int shift = k << 4;
+        runs = runs & ~(0xFFFFL << shift) | (long) (s | e << 8) << shift;
+    }
+
+    /**
+     * Inserts a run at k, shifting the runs at and after k up. Assumes there's room.
+     */
+    private void insert(int k, int s, int e) {
+        final int shift = k << 4;
+        final long low = (1L << shift) - 1;
+        runs = runs & low | (runs & ~low) << 16 | (long) (s | e << 8) << shift;
+        count++;
+    }
+
+    /**
+     * Deletes the run at k, shifting the runs after k down.
+     */
+    private void delete(int k) {
+        final long low = (1L << (k << 4)) - 1;
+        runs = runs & low | (runs >>> 16) & ~low;
+        count--;
+    }
+
+    private static int start(long runs, int k) {
+        return (int) (runs >>> (k << 4)) & 255;
+    }
+
+    private static int end(long runs, int k) {
+        return (int) (runs >>> (k << 4) + 8) & 255;
+    }
+}
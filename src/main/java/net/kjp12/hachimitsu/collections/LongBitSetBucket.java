@@ -1,12 +1,28 @@
 package net.kjp12.hachimitsu.collections;// Created 2022-15-03T23:10:48
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
+import java.util.function.LongConsumer;
 
 /**
  * @author KJP12
  * @since ${version}
  **/
 class LongBitSetBucket extends LongBitBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 1;
+    /**
+     * The size at or below which the bucket is demoted, being half of what a {@link LongBitHashBucket}
+     * can hold at most so that a demoted bucket isn't promoted again by the next few adds.
+     */
+    static final int DEMOTE_SIZE = 8;
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
     final long[] words;
 
     LongBitSetBucket(long relative) {
@@ -20,27 +36,25 @@ class LongBitSetBucket extends LongBitBucket {
     }
 
     LongBitSetBucket(long relative, long[] words) {
-        super(relative, countBits(words));
+        super(relative, LongBitWords.bitCount(words));
         this.words = words;
     }
 
-    private static void copy0(LongBitBucket bucket, long[] words) {
+    /**
+     * ORs the longs of the given bucket into the given bitset.
+     *
+     * @param bucket The bucket to read from.
+     * @param words  The bitset to write into, spanning the bucket's longs.
+     */
+    static void copy0(LongBitBucket bucket, long[] words) {
+        final int mask = words.length - 1;
         int i = -1;
         long l;
         while ((i = bucket.nextIndex(i)) >= 0) {
-            words[index(l = bucket.rawGet(i))] |= word(l);
+            words[(int) ((l = bucket.rawGet(i)) >>> 6) & mask] |= word(l);
         }
     }
 
-    // Suppressed as enhanced for / foreach is more expensive in bytecode,
-    // which isn't ideal when trying to keep within the default inlining limit.
-    @SuppressWarnings("ForLoopReplaceableByForEach")
-    private static int countBits(long[] words) {
-        int s = 0;
-        for (int i = 0, l = words.length; i < l; i++) s += Long.bitCount(words[i]);
-        return s;
-    }
-
     @Override
     public boolean contains(long l) {
         return isRelative(l) && (words[index(l)] & word(l)) != 0;
@@ -92,9 +106,156 @@ class LongBitSetBucket extends LongBitBucket {
         return words[index] != (words[index] |= word(l));
     }
 
-    @Override
+    /**
+     * Clears the bucket of any longs.
+     */
     public void clear() {
         Arrays.fill(words, 0L);
+        size = 0;
+    }
+
+    @Override
+    LongBitSetBucket copy() {
+        return new LongBitSetBucket(relative, words.clone());
+    }
+
+    /**
+     * Atomically tests the bucket for the long, acquiring the word beforehand.
+     * <p>
+     * This is intended for {@link ConcurrentLongBitHashSet}, and as such, does not track the size.
+     */
+    boolean containsAtomic(long l) {
+        return isRelative(l) && ((long) WORDS.getAcquire(words, index(l)) & word(l)) != 0;
+    }
+
+    /**
+     * Atomically adds the long to the bucket by compare-and-set of the word.
+     * <p>
+     * This is intended for {@link ConcurrentLongBitHashSet}, and as such, does not track the size.
+     *
+     * @return true if this call set the bit.
+     */
+    boolean addAtomic(long l) {
+        final long[] words = this.words;
+        final int index = index(l);
+        final long word = word(l);
+        long w;
+        do {
+            if (((w = (long) WORDS.getAcquire(words, index)) & word) != 0) return false;
+        } while (!WORDS.weakCompareAndSet(words, index, w, w | word));
+        return true;
+    }
+
+    /**
+     * Atomically removes the long from the bucket by compare-and-set of the word.
+     * <p>
+     * This is intended for {@link ConcurrentLongBitHashSet}, and as such, does not track the size.
+     *
+     * @return true if this call cleared the bit.
+     */
+    boolean removeAtomic(long l) {
+        final long[] words = this.words;
+        final int index = index(l);
+        final long word = word(l);
+        long w;
+        do {
+            if (((w = (long) WORDS.getAcquire(words, index)) & word) == 0) return false;
+        } while (!WORDS.weakCompareAndSet(words, index, w, w & ~word));
+        return true;
+    }
+
+    /**
+     * Atomically clears the bucket word by word.
+     * <p>
+     * This is intended for {@link ConcurrentLongBitHashSet}, and as such, does not track the size.
+     *
+     * @return The amount of longs cleared by this call.
+     */
+    int clearAtomic() {
+        final long[] words = this.words;
+        int s = 0;
+        for (int i = 0; i < 4; i++) s += Long.bitCount((long) WORDS.getAndSet(words, i, 0L));
+        return s;
+    }
+
+    /**
+     * Atomically copies the words into the given array.
+     *
+     * @param into The array to copy into, at least 4 long.
+     */
+    void snapshotAtomic(long[] into) {
+        final long[] words = this.words;
+        for (int i = 0; i < 4; i++) into[i] = (long) WORDS.getAcquire(words, i);
+    }
+
+    /**
+     * ORs the given bitset into the bucket.
+     *
+     * @param words The bitset to merge with the bucket.
+     * @return The change in size of the bucket.
+     */
+    int or(final long[] words) {
+        final long[] w = this.words;
+        w[0] |= words[0];
+        w[1] |= words[1];
+        w[2] |= words[2];
+        w[3] |= words[3];
+        return resize0();
+    }
+
+    /**
+     * ANDs the given bitset into the bucket.
+     *
+     * @param words The bitset to intersect the bucket with.
+     * @return The change in size of the bucket.
+     */
+    int and(final long[] words) {
+        final long[] w = this.words;
+        w[0] &= words[0];
+        w[1] &= words[1];
+        w[2] &= words[2];
+        w[3] &= words[3];
+        return resize0();
+    }
+
+    /**
+     * ANDs the complement of the given bitset into the bucket.
+     *
+     * @param words The bitset to subtract from the bucket.
+     * @return The change in size of the bucket.
+     */
+    int andNot(final long[] words) {
+        final long[] w = this.words;
+        w[0] &= ~words[0];
+        w[1] &= ~words[1];
+        w[2] &= ~words[2];
+        w[3] &= ~words[3];
+        return resize0();
+    }
+
+    /**
+     * XORs the given bitset into the bucket.
+     *
+     * @param words The bitset to toggle within the bucket.
+     * @return The change in size of the bucket.
+     */
+    int xor(final long[] words) {
+        final long[] w = this.words;
+        w[0] ^= words[0];
+        w[1] ^= words[1];
+        w[2] ^= words[2];
+        w[3] ^= words[3];
+        return resize0();
+    }
+
+    /**
+     * Recounts the size after a bulk operation.
+     *
+     * @return The change in size of the bucket.
+     */
+    int resize0() {
+        int old = size;
+        return (size = LongBitWords.bitCount(words)) - old;
     }
 
     @Override
@@ -148,6 +309,21 @@ class LongBitSetBucket extends LongBitBucket {
         return -1;
     }
 
+    /**
+     * Walks the words directly, extracting each set bit by its trailing zeros.
+     */
+    @Override
+    void forEach(LongConsumer consumer) {
+        final long[] words = this.words;
+        final long relative = this.relative;
+        long w;
+        for (int i = 0; i < 4; i++) {
+            for (w = words[i]; w != 0; w &= w - 1) {
+                consumer.accept(relative | i << 6 | Long.numberOfTrailingZeros(w));
+            }
+        }
+    }
+
     @Override
     public int nextIndex(int i, int s) {
         for (int w = ++i >>> 6, pos; w < 4; i = 0, w++) {
@@ -180,7 +356,7 @@ class LongBitSetBucket extends LongBitBucket {
      * @see <a href="https://graphics.stanford.edu/~seander/bithacks.html##SelectPosFromMSBRank">Bit Twiddling Hacks</a>
      * @see <a href="https://stackoverflow.com/a/45487375">Answer by Nominal Animal for Find nth set bit in an int</a>
      */
-    private static int selPosFromLsbRank(long v, int rank) {
+    static int selPosFromLsbRank(long v, int rank) {
         long a = (v & 0x5555555555555555L) + ((v >>> 1) & 0x5555555555555555L);
         long b = (a & 0x3333333333333333L) + ((a >>> 2) & 0x3333333333333333L);
         long c = (b & 0x0F0F0F0F0F0F0F0FL) + ((b >>> 4) & 0x0F0F0F0F0F0F0F0FL);
@@ -228,19 +404,78 @@ class LongBitSetBucket extends LongBitBucket {
         return position;
     }
 
-    //@Override
-    //public NbtElement toNbt() {
-    //    var c = new NbtCompound();
-    //    c.putLong("r", relative);
-    //    c.put("w", new NbtLongArray(words));
-    //    return c;
-    //}
+    /**
+     * The bitset can represent any combination of longs, as such, this is never promoted.
+     */
+    @Override
+    LongBitSetBucket promote() {
+        return this;
+    }
+
+    /**
+     * Packs back into a {@link LongBitHashBucket} once sparse enough, if the longs fit without collision.
+     */
+    @Override
+    LongBitBucket demote() {
+        if (size > DEMOTE_SIZE) return this;
+        var bucket = LongBitHashBucket.pack(this);
+        return bucket == null ? this : bucket;
+    }
+
+    /**
+     * 12 byte header, relative, size and reference, then the 16 byte array header and 4 words.
+     */
+    @Override
+    int footprint() {
+        return 32 + 48;
+    }
+
+    @Override
+    int serializedSize() {
+        return 41;
+    }
 
-    private static int index(long l) {
+    @Override
+    void write(DataOutput out) throws IOException {
+        final long[] words = this.words;
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+        out.writeLong(words[0]);
+        out.writeLong(words[1]);
+        out.writeLong(words[2]);
+        out.writeLong(words[3]);
+    }
+
+    /**
+     * Reads the raw bitset written by {@link #write(DataOutput)}, after the type and relative.
+     *
+     * @param relative The relative already read.
+     * @param in       The input to read the bitset from.
+     * @return The bucket as written.
+     * @throws IOException When the input fails to read.
+     */
+    static LongBitSetBucket read(long relative, DataInput in) throws IOException {
+        return new LongBitSetBucket(relative, new long[]{in.readLong(), in.readLong(), in.readLong(), in.readLong()});
+    }
+
+    static int index(long l) {
         return (int) (l >>> 6) & 3;
     }
 
-    private static long word(long l) {
+    static long word(long l) {
         return 1L << l;
     }
+
+    /**
+     * Counts the bits set below the given long, being its position within the bucket in ascending order.
+     *
+     * @param words The bitset to count within.
+     * @param l     The long to count up to, exclusive.
+     */
+    static int rank(long[] words, long l) {
+        final int index = (int) (l >>> 6) & (words.length - 1);
+        int r = Long.bitCount(words[index] & word(l) - 1);
+        for (int i = 0; i < index; i++) r += Long.bitCount(words[i]);
+        return r;
+    }
 }
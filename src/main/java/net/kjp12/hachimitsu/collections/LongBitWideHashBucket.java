@@ -0,0 +1,277 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T23:58:20
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A sparse bucket of longs for spans wider than 256, storing the least significant 12 or 16 bits
+ * in a sorted array of chars to reconstruct the long.
+ * <p>
+ * Unlike {@link LongBitHashBucket}, the keys are not direct-mapped, as colliding low bits would otherwise
+ * force a promotion into a bitset of 512 bytes or 8 KiB long before the keys themselves cost as much.
+ * The array instead doubles from 4 up to a sixteenth of the span, at which point it's as large as the
+ * bitset, before promoting into a {@link LongBitWideSetBucket}.
+ * <p>
+ * Removing a long repeats the next key over its slots rather than shifting the array, leaving the
+ * indices of the remaining longs as is for iteration. Only the last slot of each run of equal keys
+ * holds a long, with the repeated slots being reused by adds and dropped once the array is resized.
+ *
+ * @author KJP12
+ * @see LongBitHashSet.Span
+ * @since ${version}
+ **/
+class LongBitWideHashBucket extends LongBitBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 4;
+    /**
+     * The amount of low bits held by the bucket.
+     */
+    final int shift;
+    /**
+     * The low bits in ascending order up to {@link #end}.
+     */
+    char[] keys;
+    /**
+     * The amount of slots in use, including those repeated over removed longs.
+     */
+    private int end;
+
+    /**
+     * Initialises the bucket with the relative long (assumed to be masked by the span) and a new key array.
+     */
+    LongBitWideHashBucket(long relative, int shift) {
+        super(relative, 0);
+        this.shift = shift;
+        keys = new char[4];
+    }
+
+    /**
+     * Constructs the bucket with the given relative long and key array,
+     * which must be strictly ascending up to the size.
+     */
+    LongBitWideHashBucket(long relative, int shift, char[] keys, int size) {
+        super(relative, size);
+        this.shift = shift;
+        this.keys = keys;
+        this.end = size;
+    }
+
+    /**
+     * The most longs held before promoting, being a sixteenth of the span for the keys to cost as much as the bitset.
+     */
+    static int limit(int shift) {
+        return 1 << shift - 4;
+    }
+
+    private boolean isRelative0(long l) {
+        return relative == (l & -1L << shift);
+    }
+
+    /**
+     * The low bits of the long as held within the key array.
+     */
+    private char key(long l) {
+        return (char) (l & ~(-1L << shift));
+    }
+
+    /**
+     * Whether the slot holds a long, being the last of its run of equal keys.
+     */
+    private boolean live(int i) {
+        return i == end - 1 || keys[i] != keys[i + 1];
+    }
+
+    @Override
+    boolean contains(long l) {
+        return isRelative0(l) && Arrays.binarySearch(keys, 0, end, key(l)) >= 0;
+    }
+
+    @Override
+    boolean remove(long l) {
+        final int i;
+        if (!isRelative0(l) || (i = Arrays.binarySearch(keys, 0, end, key(l))) < 0) return false;
+        final char[] keys = this.keys;
+        final char k = keys[i];
+        int a = i, b = i;
+        while (a > 0 && keys[a - 1] == k) a--;
+        while (b + 1 < end && keys[b + 1] == k) b++;
+        if (b + 1 == end) end = a;
+        else Arrays.fill(keys, a, b + 1, keys[b + 1]);
+        size--;
+        return true;
+    }
+
+    @Override
+    boolean add(long l) {
+        if (!isRelative0(l)) return false;
+        final char[] keys = this.keys;
+        final char k = key(l);
+        int i = Arrays.binarySearch(keys, 0, end, k);
+        if (i >= 0) return false;
+        i = -i - 1;
+        if (i > 1 && keys[i - 2] == keys[i - 1]) {
+            // Takes over the last repeated slot of the run before.
+            keys[i - 1] = k;
+        } else if (i + 1 < end && keys[i] == keys[i + 1]) {
+            // Takes over the first repeated slot of the run after.
+            keys[i] = k;
+        } else if (end < keys.length) {
+            System.arraycopy(keys, i, keys, i + 1, end++ - i);
+            keys[i] = k;
+        } else if (!resize(i, k)) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Packs the longs into a new array with the key inserted, doubling the array if every slot holds a long,
+     * as long as it fits within the {@linkplain #limit(int) limit}.
+     */
+    private boolean resize(int i, char k) {
+        final char[] keys = this.keys;
+        final int length = size == keys.length ? keys.length << 1 : keys.length;
+        if (length > limit(shift)) return false;
+        final char[] resized = new char[length];
+        int n = 0;
+        for (int j = 0; j < i; j++) if (live(j)) resized[n++] = keys[j];
+        resized[n++] = k;
+        for (int j = i; j < end; j++) if (live(j)) resized[n++] = keys[j];
+        this.keys = resized;
+        end = n;
+        if (LongBitHashSetMetrics.ENABLED) LongBitHashSetMetrics.hashResize();
+        return true;
+    }
+
+    /**
+     * Clears the bucket of any longs.
+     */
+    void clear() {
+        end = 0;
+        size = 0;
+    }
+
+    @Override
+    LongBitWideHashBucket copy() {
+        var copy = new LongBitWideHashBucket(relative, shift, keys.clone(), size);
+        copy.end = end;
+        return copy;
+    }
+
+    @Override
+    long rawGet(int i) {
+        return relative | keys[i];
+    }
+
+    @Override
+    void forEach(LongConsumer consumer) {
+        final char[] keys = this.keys;
+        final long relative = this.relative;
+        for (int i = 0, l = end; i < l; i++) {
+            if (live(i)) consumer.accept(relative | keys[i]);
+        }
+    }
+
+    @Override
+    int nextIndex(int i) {
+        while (++i < end) {
+            if (live(i)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    int nextIndex(int i, int s) {
+        while (++i < end) {
+            if (live(i) && s-- == 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts into a {@link LongBitWideSetBucket} as the key array cannot grow any further.
+     */
+    @Override
+    LongBitWideSetBucket promote() {
+        return new LongBitWideSetBucket(this, shift);
+    }
+
+    /**
+     * Packs into a smaller key array once at most a quarter of the current key array is in use.
+     */
+    @Override
+    LongBitBucket demote() {
+        final int length = keys.length;
+        if (length == 4 || size > length >>> 2) return this;
+        return pack(this, shift);
+    }
+
+    /**
+     * Packs the longs of the bucket into the smallest key array that holds them.
+     *
+     * @param bucket The bucket to pack the longs of, iterating in ascending order as every bucket of a wide span does.
+     * @param shift  The amount of low bits held by the bucket.
+     * @return The packed bucket, or null if the longs exceed the {@linkplain #limit(int) limit}.
+     */
+    static LongBitWideHashBucket pack(LongBitBucket bucket, int shift) {
+        final int size = bucket.size();
+        if (size > limit(shift)) return null;
+        final char[] keys = new char[Math.max(4, HashCommon.nextPowerOfTwo(size))];
+        final long mask = ~(-1L << shift);
+        int n = 0;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) keys[n++] = (char) (bucket.rawGet(i) & mask);
+        assert n == size : "Unexpected mismatch: expected " + size + " but got " + n + "!";
+        return new LongBitWideHashBucket(bucket.relative(), shift, keys, size);
+    }
+
+    /**
+     * 12 byte header, relative, size, reference, shift, end and the array reference,
+     * then the 16 byte array header and keys aligned to 8.
+     */
+    @Override
+    int footprint() {
+        return 40 + (16 + 2 * keys.length + 7 & ~7);
+    }
+
+    @Override
+    int serializedSize() {
+        return 11 + 2 * size;
+    }
+
+    @Override
+    void write(DataOutput out) throws IOException {
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+        out.writeShort(size);
+        for (int i = -1; (i = nextIndex(i)) >= 0; ) out.writeShort(keys[i]);
+    }
+
+    /**
+     * Reads the sorted keys written by {@link #write(DataOutput)}, after the type and relative.
+     *
+     * @throws IOException When the input fails to read, or the keys are not strictly ascending within the span.
+     */
+    static LongBitWideHashBucket read(long relative, int shift, DataInput in) throws IOException {
+        final int size = in.readUnsignedShort();
+        if (size > limit(shift)) {
+            throw new IOException("Invalid key count " + size);
+        }
+        final int mask = ~(-1 << shift);
+        final char[] keys = new char[Math.max(4, HashCommon.nextPowerOfTwo(size))];
+        for (int i = 0; i < size; i++) {
+            final char k = keys[i] = in.readChar();
+            if ((k & ~mask) != 0 || (i > 0 && k <= keys[i - 1])) {
+                throw new IOException("Keys are not strictly ascending at " + i);
+            }
+        }
+        return new LongBitWideHashBucket(relative, shift, keys, size);
+    }
+}
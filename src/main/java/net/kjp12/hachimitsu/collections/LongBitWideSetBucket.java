@@ -0,0 +1,186 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T00:21:47
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * A bitset bucket of longs for spans wider than 256, being 64 or 1024 words rather than 4.
+ * <p>
+ * The span is derived from the length of the words, and the relative is masked by it. Everything
+ * {@link LongBitSetBucket} unrolls over 4 words is looped over every word here instead,
+ * with the bulk operations going through {@link LongBitWords} to be vectorized where available.
+ * <p>
+ * This is not intended for {@link ConcurrentLongBitHashSet}, as such, the atomic operations are left as is.
+ *
+ * @author KJP12
+ * @see LongBitHashSet.Span
+ * @since ${version}
+ **/
+class LongBitWideSetBucket extends LongBitSetBucket {
+    /**
+     * The type tag for serialization.
+     */
+    static final byte TYPE = 5;
+
+    /**
+     * Initialises an empty bucket spanning {@code 1 << shift} longs.
+     */
+    LongBitWideSetBucket(long relative, int shift) {
+        super(relative, new long[1 << shift - 6]);
+    }
+
+    /**
+     * Converts the given bucket into a bitset spanning {@code 1 << shift} longs.
+     */
+    LongBitWideSetBucket(LongBitBucket bucket, int shift) {
+        super(bucket.relative(), new long[1 << shift - 6]);
+        copy0(bucket, words);
+        size = bucket.size();
+    }
+
+    LongBitWideSetBucket(long relative, long[] words) {
+        super(relative, words);
+    }
+
+    private boolean isRelative0(long l) {
+        return relative == (l & -((long) words.length << 6));
+    }
+
+    private int index0(long l) {
+        return (int) (l >>> 6) & (words.length - 1);
+    }
+
+    @Override
+    public boolean contains(long l) {
+        return isRelative0(l) && (words[index0(l)] & word(l)) != 0;
+    }
+
+    @Override
+    public boolean remove(long l) {
+        if (!isRelative0(l)) return false;
+        final long[] words = this.words;
+        final int index = index0(l);
+        if (words[index] == (words[index] &= ~word(l))) return false;
+        size--;
+        return true;
+    }
+
+    @Override
+    public boolean add(long l) {
+        if (!isRelative0(l)) return false;
+        final long[] words = this.words;
+        final int index = index0(l);
+        if (words[index] == (words[index] |= word(l))) return false;
+        size++;
+        return true;
+    }
+
+    @Override
+    LongBitWideSetBucket copy() {
+        return new LongBitWideSetBucket(relative, words.clone());
+    }
+
+    @Override
+    int or(final long[] words) {
+        LongBitWords.or(this.words, words);
+        return resize0();
+    }
+
+    @Override
+    int and(final long[] words) {
+        LongBitWords.and(this.words, words);
+        return resize0();
+    }
+
+    @Override
+    int andNot(final long[] words) {
+        LongBitWords.andNot(this.words, words);
+        return resize0();
+    }
+
+    @Override
+    int xor(final long[] words) {
+        LongBitWords.xor(this.words, words);
+        return resize0();
+    }
+
+    @Override
+    public int nextIndex(int index) {
+        final long[] words = this.words;
+        long w;
+        for (int word = ++index >>> 6; word < words.length; index = 0, word++) {
+            if ((w = words[word] & (-1L << index)) != 0) return word << 6 | Long.numberOfTrailingZeros(w);
+        }
+        return -1;
+    }
+
+    @Override
+    public int nextIndex(int i, int s) {
+        final long[] words = this.words;
+        for (int w = ++i >>> 6, pos; w < words.length; i = 0, w++) {
+            if ((pos = selPosFromLsbRank(words[w] & (-1L << i), s + 1)) < 0) {
+                s -= ~pos;
+                continue;
+            }
+            return w << 6 | pos;
+        }
+        return -1;
+    }
+
+    @Override
+    void forEach(LongConsumer consumer) {
+        final long[] words = this.words;
+        final long relative = this.relative;
+        long w;
+        for (int i = 0; i < words.length; i++) {
+            for (w = words[i]; w != 0; w &= w - 1) {
+                consumer.accept(relative | (long) i << 6 | Long.numberOfTrailingZeros(w));
+            }
+        }
+    }
+
+    /**
+     * Packs back into a {@link LongBitWideHashBucket} once at most a quarter of its limit is in use,
+     * leaving room to add before promoting again.
+     */
+    @Override
+    LongBitBucket demote() {
+        final int shift = Integer.numberOfTrailingZeros(words.length) + 6;
+        if (size > LongBitWideHashBucket.limit(shift) >>> 2) return this;
+        var bucket = LongBitWideHashBucket.pack(this, shift);
+        return bucket == null ? this : bucket;
+    }
+
+    /**
+     * 12 byte header, relative, size and reference, then the 16 byte array header and words.
+     */
+    @Override
+    int footprint() {
+        return 32 + 16 + 8 * words.length;
+    }
+
+    @Override
+    int serializedSize() {
+        return 9 + 8 * words.length;
+    }
+
+    @Override
+    void write(DataOutput out) throws IOException {
+        out.writeByte(TYPE);
+        out.writeLong(relative);
+        for (long w : words) out.writeLong(w);
+    }
+
+    /**
+     * Reads the raw bitset written by {@link #write(DataOutput)}, after the type and relative.
+     *
+     * @throws IOException When the input fails to read.
+     */
+    static LongBitWideSetBucket read(long relative, int shift, DataInput in) throws IOException {
+        final long[] words = new long[1 << shift - 6];
+        for (int i = 0; i < words.length; i++) words[i] = in.readLong();
+        return new LongBitWideSetBucket(relative, words);
+    }
+}
@@ -0,0 +1,55 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T01:12:36
+
+/**
+ * Bulk operations over bitsets of words, as used by {@link LongBitWideSetBucket} and the set relations
+ * of {@link LongBitHashSet}.
+ * <p>
+ * This is the baseline of a multi-release JAR, with plain loops for the JIT to unroll as it sees fit.
+ * {@code META-INF/versions/17} replaces this class with one using {@code jdk.incubator.vector} when the
+ * module is present, with {@code META-INF/versions/21} additionally vectorizing the popcounts.
+ * The bitsets given must be of equal length.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+final class LongBitWords {
+    private LongBitWords() {
+    }
+
+    static void or(long[] into, long[] words) {
+        for (int i = 0; i < into.length; i++) into[i] |= words[i];
+    }
+
+    static void and(long[] into, long[] words) {
+        for (int i = 0; i < into.length; i++) into[i] &= words[i];
+    }
+
+    static void andNot(long[] into, long[] words) {
+        for (int i = 0; i < into.length; i++) into[i] &= ~words[i];
+    }
+
+    static void xor(long[] into, long[] words) {
+        for (int i = 0; i < into.length; i++) into[i] ^= words[i];
+    }
+
+    /**
+     * Counts the bits set within the bitset.
+     */
+    // Suppressed as enhanced for / foreach is more expensive in bytecode,
+    // which isn't ideal when trying to keep within the default inlining limit.
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    static int bitCount(long[] words) {
+        int s = 0;
+        for (int i = 0, l = words.length; i < l; i++) s += Long.bitCount(words[i]);
+        return s;
+    }
+
+    /**
+     * Counts the bits set within both bitsets, without writing to either.
+     */
+    static int andCount(long[] a, long[] b) {
+        int s = 0;
+        for (int i = 0; i < a.length; i++) s += Long.bitCount(a[i] & b[i]);
+        return s;
+    }
+}
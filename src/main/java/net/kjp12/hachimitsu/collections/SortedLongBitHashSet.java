@@ -0,0 +1,484 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T16:05:44
+
+import it.unimi.dsi.fastutil.longs.AbstractLongSortedSet;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongBidirectionalIterator;
+import it.unimi.dsi.fastutil.longs.LongComparator;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+import it.unimi.dsi.fastutil.longs.LongSpliterator;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * A {@link LongBitHashSet} that is also navigable in signed order.
+ * <p>
+ * Navigation binary searches an index of the bucket relatives sorted in signed order, making lookups
+ * O(log buckets) plus a scan of a single bucket. The index is rebuilt lazily on the first navigation after
+ * a bucket has been added to or removed from the directory, costing O(buckets log buckets). Adding to or
+ * removing from existing buckets leaves the index intact.
+ *
+ * @author KJP12
+ * @see LongBitHashSet
+ * @since ${version}
+ **/
+public class SortedLongBitHashSet extends LongBitHashSet implements LongSortedSet {
+    /**
+     * The relatives of the directory in signed order, valid while {@link #indexed} matches {@link #structure}.
+     */
+    private long[] relatives = LongArrays.EMPTY_ARRAY;
+    private int indexed = structure - 1;
+
+    public SortedLongBitHashSet() {
+    }
+
+    /**
+     * Creates a deep copy of the given set, copying bucket by bucket.
+     *
+     * @param set The set to copy.
+     * @throws IllegalArgumentException When the set is not of the default {@link Span#S256 span}.
+     */
+    public SortedLongBitHashSet(LongBitHashSet set) {
+        super(set);
+        if (shift != 8) {
+            throw new IllegalArgumentException("Sorted sets only support a span of 256, got " + (1 << shift));
+        }
+    }
+
+    /**
+     * Fetches the sorted index of relatives, rebuilding it if the directory has changed since.
+     */
+    private long[] index() {
+        if (indexed != structure) {
+            final LongBitBucket[] buckets = this.buckets;
+            int n = 0;
+            for (var bucket : buckets) {
+                if (bucket != null) n++;
+            }
+            final long[] relatives = new long[n];
+            n = 0;
+            for (var bucket : buckets) {
+                if (bucket != null) relatives[n++] = bucket.relative();
+            }
+            Arrays.sort(relatives);
+            this.relatives = relatives;
+            indexed = structure;
+        }
+        return relatives;
+    }
+
+    /**
+     * Iterates in signed order.
+     */
+    @Override
+    public LongBidirectionalIterator iterator() {
+        return new j$sitr(index(), 0, 0, true, true);
+    }
+
+    /**
+     * Iterates in signed order, starting after the given long.
+     */
+    @Override
+    public LongBidirectionalIterator iterator(long fromElement) {
+        var itr = new j$sitr(index(), 0, 0, true, true);
+        itr.position(fromElement, false);
+        return itr;
+    }
+
+    /**
+     * Passes every long to the action in signed order, bucket by bucket along the index.
+     */
+    @Override
+    public void forEach(LongConsumer action) {
+        Objects.requireNonNull(action);
+        long[] longs = null;
+        LongBitBucket bucket;
+        for (long relative : index()) {
+            if ((bucket = fetch0(relative)) == null) continue;
+            if (bucket instanceof LongBitHashBucket) {
+                // Hash buckets never hold more than 16.
+                if (longs == null) longs = new long[16];
+                for (int i = 0, c = sorted(bucket, longs); i < c; i++) action.accept(longs[i]);
+            } else {
+                bucket.forEach(action);
+            }
+        }
+    }
+
+    /**
+     * Spliterates in signed order, as required of a sorted set.
+     * Unlike {@link LongBitHashSet#spliterator()}, this does not split over the directory.
+     */
+    @Override
+    public LongSpliterator spliterator() {
+        return LongSortedSet.super.spliterator();
+    }
+
+    @Override
+    public LongSortedSet subSet(long fromElement, long toElement) {
+        return new j$sub(fromElement, toElement, false, false);
+    }
+
+    @Override
+    public LongSortedSet headSet(long toElement) {
+        return new j$sub(0, toElement, true, false);
+    }
+
+    @Override
+    public LongSortedSet tailSet(long fromElement) {
+        return new j$sub(fromElement, 0, false, true);
+    }
+
+    /**
+     * Always null, as the set is in natural order.
+     */
+    @Override
+    public LongComparator comparator() {
+        return null;
+    }
+
+    /**
+     * @throws NoSuchElementException When the set is empty.
+     */
+    @Override
+    public long firstLong() {
+        return ceilingLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * @throws NoSuchElementException When the set is empty.
+     */
+    @Override
+    public long lastLong() {
+        return floorLong(Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the least long in the set greater than or equal to the given long.
+     *
+     * @throws NoSuchElementException When there is no such long.
+     */
+    public long ceilingLong(long l) {
+        final long[] relatives = index();
+        int i = Arrays.binarySearch(relatives, l & ~255);
+        int low = (int) l & 255;
+        LongBitBucket bucket;
+        if (i < 0) {
+            i = ~i;
+            low = 0;
+        }
+        for (int j; i < relatives.length; i++, low = 0) {
+            if ((bucket = fetch0(relatives[i])) != null && (j = ceilingIndex(bucket, low)) >= 0) {
+                return relatives[i] | j;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Finds the greatest long in the set less than or equal to the given long.
+     *
+     * @throws NoSuchElementException When there is no such long.
+     */
+    public long floorLong(long l) {
+        final long[] relatives = index();
+        int i = Arrays.binarySearch(relatives, l & ~255);
+        int low = (int) l & 255;
+        LongBitBucket bucket;
+        if (i < 0) {
+            i = ~i - 1;
+            low = 255;
+        }
+        for (int j; i >= 0; i--, low = 255) {
+            if ((bucket = fetch0(relatives[i])) != null && (j = floorIndex(bucket, low)) >= 0) {
+                return relatives[i] | j;
+            }
+        }
+        throw new NoSuchElementException();
+    }
+
+    /**
+     * Finds the least long in the set strictly greater than the given long.
+     *
+     * @throws NoSuchElementException When there is no such long.
+     */
+    public long higherLong(long l) {
+        if (l == Long.MAX_VALUE) throw new NoSuchElementException();
+        return ceilingLong(l + 1);
+    }
+
+    /**
+     * Finds the greatest long in the set strictly less than the given long.
+     *
+     * @throws NoSuchElementException When there is no such long.
+     */
+    public long lowerLong(long l) {
+        if (l == Long.MIN_VALUE) throw new NoSuchElementException();
+        return floorLong(l - 1);
+    }
+
+    /**
+     * Finds the least low 8 bits within the bucket greater than or equal to the given low 8 bits.
+     *
+     * @return The low 8 bits found, or -1 if there is none.
+     */
+    private static int ceilingIndex(LongBitBucket bucket, int low) {
+        if (!(bucket instanceof LongBitHashBucket)) {
+            // Every other bucket is indexed by the low 8 bits.
+            return bucket.nextIndex(low - 1);
+        }
+        int r = 256, k;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+            if ((k = (int) bucket.rawGet(i) & 255) >= low && k < r) r = k;
+        }
+        return r == 256 ? -1 : r;
+    }
+
+    /**
+     * Finds the greatest low 8 bits within the bucket less than or equal to the given low 8 bits.
+     *
+     * @return The low 8 bits found, or -1 if there is none.
+     */
+    private static int floorIndex(LongBitBucket bucket, int low) {
+        if (bucket instanceof LongBitSetBucket) {
+            final long[] words = ((LongBitSetBucket) bucket).words;
+            long w;
+            for (int i = low >>> 6, mask = low & 63; i >= 0; i--, mask = 63) {
+                if ((w = words[i] & (-1L >>> (63 - mask))) != 0) {
+                    return i << 6 | 63 - Long.numberOfLeadingZeros(w);
+                }
+            }
+            return -1;
+        }
+        if (bucket instanceof LongBitFullBucket) {
+            return low;
+        }
+        int r = -1, k;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) {
+            if ((k = (int) bucket.rawGet(i) & 255) <= low && k > r) r = k;
+        }
+        return r;
+    }
+
+    /**
+     * Copies the bucket's longs into the array in signed order.
+     *
+     * @return The amount of longs copied.
+     */
+    private static int sorted(LongBitBucket bucket, long[] into) {
+        if (bucket == null) return 0;
+        int c = 0;
+        for (int i = -1; (i = bucket.nextIndex(i)) >= 0; ) into[c++] = bucket.rawGet(i);
+        // Only the hash bucket is in hash-order rather than in order of the low 8 bits.
+        if (bucket instanceof LongBitHashBucket) Arrays.sort(into, 0, c);
+        return c;
+    }
+
+    /**
+     * Bidirectional iterator over the sorted index, copying out a bucket at a time.
+     * <p>
+     * The cursor is between {@code longs[pos - 1]} and {@code longs[pos]} of the bucket at {@code bucket}
+     * within the index, moving between buckets as it runs off either end. It is bounded by
+     * {@code from} inclusive and {@code to} exclusive unless {@code bottom} or {@code top} are set respectively.
+     */
+    class j$sitr implements LongBidirectionalIterator {
+        private final long[] relatives;
+        private final long[] longs = new long[256];
+        private final long from, to;
+        private final boolean bottom, top;
+        private int bucket = -1, pos, count;
+        private long last;
+        private boolean removable;
+
+        j$sitr(long[] relatives, long from, long to, boolean bottom, boolean top) {
+            this.relatives = relatives;
+            this.from = from;
+            this.to = to;
+            this.bottom = bottom;
+            this.top = top;
+        }
+
+        /**
+         * Positions the cursor such that the next long is the least long greater than,
+         * or if inclusive, equal to the given long.
+         */
+        void position(long l, boolean inclusive) {
+            int i = Arrays.binarySearch(relatives, l & ~255);
+            if (i >= 0) {
+                load(i);
+                int p = 0;
+                while (p < count && (inclusive ? longs[p] < l : longs[p] <= l)) p++;
+                pos = p;
+            } else if ((i = ~i) > 0) {
+                load(i - 1);
+                pos = count;
+            }
+        }
+
+        private void load(int bucket) {
+            this.bucket = bucket;
+            this.count = sorted(fetch0(relatives[bucket]), longs);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (pos == count && bucket + 1 < relatives.length) {
+                load(bucket + 1);
+                pos = 0;
+            }
+            return pos < count && (top || longs[pos] < to);
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            while (pos == 0 && bucket > 0) {
+                load(bucket - 1);
+                pos = count;
+            }
+            return pos > 0 && (bottom || longs[pos - 1] >= from);
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            removable = true;
+            return last = longs[pos++];
+        }
+
+        @Override
+        public long previousLong() {
+            if (!hasPrevious()) {
+                throw new NoSuchElementException();
+            }
+            removable = true;
+            return last = longs[--pos];
+        }
+
+        @Override
+        public void remove() {
+            if (!removable) {
+                throw new IllegalStateException();
+            }
+            removable = false;
+            SortedLongBitHashSet.this.remove(last);
+        }
+    }
+
+    /**
+     * Range view of the set, bounded by {@code from} inclusive and {@code to} exclusive
+     * unless {@code bottom} or {@code top} are set respectively.
+     */
+    class j$sub extends AbstractLongSortedSet {
+        private final long from, to;
+        private final boolean bottom, top;
+
+        j$sub(long from, long to, boolean bottom, boolean top) {
+            if (!bottom && !top && from > to) {
+                throw new IllegalArgumentException("Start element (" + from + ") is larger than end element (" + to + ")");
+            }
+            this.from = from;
+            this.to = to;
+            this.bottom = bottom;
+            this.top = top;
+        }
+
+        private boolean in(long l) {
+            return (bottom || l >= from) && (top || l < to);
+        }
+
+        @Override
+        public boolean contains(long l) {
+            return in(l) && SortedLongBitHashSet.this.contains(l);
+        }
+
+        @Override
+        public boolean add(long l) {
+            if (!in(l)) {
+                throw new IllegalArgumentException("Element (" + l + ") out of range");
+            }
+            return SortedLongBitHashSet.this.add(l);
+        }
+
+        @Override
+        public boolean remove(long l) {
+            return in(l) && SortedLongBitHashSet.this.remove(l);
+        }
+
+        /**
+         * Counts the longs within range, costing a walk over the range.
+         */
+        @Override
+        public int size() {
+            int s = 0;
+            for (var itr = iterator(); itr.hasNext(); itr.nextLong()) s++;
+            return s;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return !iterator().hasNext();
+        }
+
+        @Override
+        public LongBidirectionalIterator iterator() {
+            var itr = new j$sitr(index(), from, to, bottom, top);
+            if (!bottom) itr.position(from, true);
+            return itr;
+        }
+
+        @Override
+        public LongBidirectionalIterator iterator(long fromElement) {
+            var itr = new j$sitr(index(), from, to, bottom, top);
+            if (!bottom && fromElement < from) {
+                itr.position(from, true);
+            } else if (!top && fromElement >= to) {
+                itr.position(to, true);
+            } else {
+                itr.position(fromElement, false);
+            }
+            return itr;
+        }
+
+        @Override
+        public LongSortedSet subSet(long fromElement, long toElement) {
+            if (!bottom && fromElement < from) fromElement = from;
+            if (!top && toElement > to) toElement = to;
+            return new j$sub(fromElement, toElement, false, false);
+        }
+
+        @Override
+        public LongSortedSet headSet(long toElement) {
+            if (!top && toElement > to) toElement = to;
+            return new j$sub(from, toElement, bottom, false);
+        }
+
+        @Override
+        public LongSortedSet tailSet(long fromElement) {
+            if (!bottom && fromElement < from) fromElement = from;
+            return new j$sub(fromElement, to, false, top);
+        }
+
+        @Override
+        public LongComparator comparator() {
+            return null;
+        }
+
+        @Override
+        public long firstLong() {
+            long l = bottom ? SortedLongBitHashSet.this.firstLong() : ceilingLong(from);
+            if (!in(l)) throw new NoSuchElementException();
+            return l;
+        }
+
+        @Override
+        public long lastLong() {
+            long l = top ? SortedLongBitHashSet.this.lastLong() : lowerLong(to);
+            if (!in(l)) throw new NoSuchElementException();
+            return l;
+        }
+    }
+}
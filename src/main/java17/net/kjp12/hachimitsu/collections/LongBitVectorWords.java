@@ -0,0 +1,68 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T01:34:51
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code jdk.incubator.vector} paths of {@link LongBitWords}, only ever loaded once the module is known
+ * to be present.
+ * <p>
+ * Java 17 lacks a lanewise popcount, as such, the counts are handed back to the scalar loops of
+ * {@link LongBitWords}. {@code META-INF/versions/21} replaces this class with one vectorizing them as well.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+final class LongBitVectorWords {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private LongBitVectorWords() {
+    }
+
+    static void or(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i).or(LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] |= words[i];
+    }
+
+    static void and(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i).and(LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] &= words[i];
+    }
+
+    static void andNot(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] &= ~words[i];
+    }
+
+    static void xor(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i)
+                    .lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] ^= words[i];
+    }
+
+    static int bitCount(long[] words) {
+        return LongBitWords.bitCount0(words);
+    }
+
+    static int andCount(long[] a, long[] b) {
+        return LongBitWords.andCount0(a, b);
+    }
+}
@@ -0,0 +1,109 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T01:26:04
+
+/**
+ * Bulk operations over bitsets of words, as used by {@link LongBitWideSetBucket} and the set relations
+ * of {@link LongBitHashSet}.
+ * <p>
+ * This is the Java 17 overlay of the multi-release JAR, handing bitsets wide enough off to
+ * {@link LongBitVectorWords} when the {@code jdk.incubator.vector} module is present, as enabled by
+ * {@code --add-modules jdk.incubator.vector}. Otherwise, this behaves as the baseline.
+ * The bitsets given must be of equal length.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+final class LongBitWords {
+    /**
+     * Whether to use the Vector API, only if the {@code jdk.incubator.vector} module is present to avoid linking
+     * against it otherwise. As the flag is a constant, the JIT folds away the path not taken.
+     */
+    static final boolean VECTOR;
+    /**
+     * The least amount of words worth vectorizing. The 4 words of {@link LongBitSetBucket} are left to the scalar loop,
+     * as a single vector doesn't make up for the setup.
+     */
+    private static final int THRESHOLD = 16;
+
+    static {
+        var vector = ModuleLayer.boot().findModule("jdk.incubator.vector");
+        // The baseline can't require an incubator module, so the edge is added once it's known to be present.
+        vector.ifPresent(LongBitWords.class.getModule()::addReads);
+        VECTOR = vector.isPresent();
+    }
+
+    private LongBitWords() {
+    }
+
+    static void or(long[] into, long[] words) {
+        if (VECTOR && into.length >= THRESHOLD) {
+            LongBitVectorWords.or(into, words);
+            return;
+        }
+        for (int i = 0; i < into.length; i++) into[i] |= words[i];
+    }
+
+    static void and(long[] into, long[] words) {
+        if (VECTOR && into.length >= THRESHOLD) {
+            LongBitVectorWords.and(into, words);
+            return;
+        }
+        for (int i = 0; i < into.length; i++) into[i] &= words[i];
+    }
+
+    static void andNot(long[] into, long[] words) {
+        if (VECTOR && into.length >= THRESHOLD) {
+            LongBitVectorWords.andNot(into, words);
+            return;
+        }
+        for (int i = 0; i < into.length; i++) into[i] &= ~words[i];
+    }
+
+    static void xor(long[] into, long[] words) {
+        if (VECTOR && into.length >= THRESHOLD) {
+            LongBitVectorWords.xor(into, words);
+            return;
+        }
+        for (int i = 0; i < into.length; i++) into[i] ^= words[i];
+    }
+
+    /**
+     * Counts the bits set within the bitset.
+     */
+    static int bitCount(long[] words) {
+        if (VECTOR && words.length >= THRESHOLD) {
+            return LongBitVectorWords.bitCount(words);
+        }
+        return bitCount0(words);
+    }
+
+    /**
+     * Counts the bits set within both bitsets, without writing to either.
+     */
+    static int andCount(long[] a, long[] b) {
+        if (VECTOR && a.length >= THRESHOLD) {
+            return LongBitVectorWords.andCount(a, b);
+        }
+        return andCount0(a, b);
+    }
+
+    /**
+     * The scalar loop of {@link #bitCount(long[])}, also used by {@link LongBitVectorWords} where the lanewise
+     * popcount is unavailable.
+     */
+    @SuppressWarnings("ForLoopReplaceableByForEach")
+    static int bitCount0(long[] words) {
+        int s = 0;
+        for (int i = 0, l = words.length; i < l; i++) s += Long.bitCount(words[i]);
+        return s;
+    }
+
+    /**
+     * The scalar loop of {@link #andCount(long[], long[])}, also used by {@link LongBitVectorWords} where the
+     * lanewise popcount is unavailable.
+     */
+    static int andCount0(long[] a, long[] b) {
+        int s = 0;
+        for (int i = 0; i < a.length; i++) s += Long.bitCount(a[i] & b[i]);
+        return s;
+    }
+}
@@ -0,0 +1,85 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T01:47:19
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@code jdk.incubator.vector} paths of {@link LongBitWords}, only ever loaded once the module is known
+ * to be present.
+ * <p>
+ * This is the Java 21 overlay, additionally vectorizing the counts by the lanewise popcount added in Java 19,
+ * summing the counts per lane and reducing across the lanes once at the end.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+final class LongBitVectorWords {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private LongBitVectorWords() {
+    }
+
+    static void or(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i).or(LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] |= words[i];
+    }
+
+    static void and(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i).and(LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] &= words[i];
+    }
+
+    static void andNot(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i)
+                    .lanewise(VectorOperators.AND_NOT, LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] &= ~words[i];
+    }
+
+    static void xor(long[] into, long[] words) {
+        final int bound = SPECIES.loopBound(into.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, into, i)
+                    .lanewise(VectorOperators.XOR, LongVector.fromArray(SPECIES, words, i)).intoArray(into, i);
+        }
+        for (; i < into.length; i++) into[i] ^= words[i];
+    }
+
+    static int bitCount(long[] words) {
+        final int bound = SPECIES.loopBound(words.length);
+        var counts = LongVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            counts = counts.add(LongVector.fromArray(SPECIES, words, i).lanewise(VectorOperators.BIT_COUNT));
+        }
+        int s = (int) counts.reduceLanes(VectorOperators.ADD);
+        for (; i < words.length; i++) s += Long.bitCount(words[i]);
+        return s;
+    }
+
+    static int andCount(long[] a, long[] b) {
+        final int bound = SPECIES.loopBound(a.length);
+        var counts = LongVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            counts = counts.add(LongVector.fromArray(SPECIES, a, i)
+                    .and(LongVector.fromArray(SPECIES, b, i)).lanewise(VectorOperators.BIT_COUNT));
+        }
+        int s = (int) counts.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) s += Long.bitCount(a[i] & b[i]);
+        return s;
+    }
+}
@@ -0,0 +1,152 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T11:26:40
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class ConcurrentLongBitHashSetTest {
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 65536;
+
+    @Test
+    public void concurrentAdd() throws InterruptedException {
+        var clbhs = new ConcurrentLongBitHashSet();
+        var keys = keys();
+
+        run(t -> {
+            for (long l : keys[t]) clbhs.add(l);
+        });
+
+        var lohs = new LongOpenHashSet();
+        for (var k : keys) for (long l : k) lohs.add(l);
+
+        assertEquals(lohs.size(), clbhs.size(), "size mismatch");
+        assertEquals(lohs, clbhs, "lohs -> clbhs content mismatch");
+        assertEquals(clbhs, lohs, "clbhs -> lohs content mismatch");
+    }
+
+    @Test
+    public void concurrentAddRemove() throws InterruptedException {
+        var clbhs = new ConcurrentLongBitHashSet();
+        var keys = keys();
+
+        // Every thread adds its own keys, then removes every other key it added.
+        run(t -> {
+            for (long l : keys[t]) clbhs.add(l);
+            for (int i = 0; i < keys[t].length; i += 2) clbhs.remove(keys[t][i]);
+        });
+
+        var added = new LongOpenHashSet();
+        for (var k : keys) for (long l : k) added.add(l);
+        var lohs = new LongOpenHashSet(added);
+        for (var k : keys) for (int i = 0; i < k.length; i += 2) lohs.remove(k[i]);
+        // Keys shared between threads may be removed by one and re-added by another.
+        for (long l : clbhs) assertTrue(added.contains(l), "clbhs produced a key never added");
+        for (long l : lohs) assertTrue(clbhs.contains(l), "clbhs lost " + l);
+
+        int count = 0;
+        for (var itr = clbhs.iterator(); itr.hasNext(); itr.nextLong()) count++;
+        assertEquals(count, clbhs.size(), "size mismatch");
+
+        clbhs.clear();
+        assertTrue(clbhs.isEmpty(), "clear left a size behind");
+        assertFalse(clbhs.iterator().hasNext(), "clear left a key behind");
+    }
+
+    @Test
+    public void failedResize() {
+        // Fails the allocation of the directory a few times over once it's past its first few growths.
+        var failures = new AtomicInteger();
+        var clbhs = new ConcurrentLongBitHashSet() {
+            @Override
+            Object[] slots0(int length) {
+                if (length >= 256 && failures.getAndIncrement() < THREADS) {
+                    throw new OutOfMemoryError("Forced by the test");
+                }
+                return super.slots0(length);
+            }
+        };
+
+        var single = new ConcurrentLongBitHashSet() {
+            @Override
+            Object[] slots0(int length) {
+                throw new OutOfMemoryError("Forced by the test");
+            }
+        };
+        assertThrows(OutOfMemoryError.class, () -> {
+            for (long l = 0; ; l += 256) single.add(l);
+        }, "allocation failure swallowed");
+        // A failed resize must not leave the directory claimed, else this spins forever.
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(OutOfMemoryError.class, () -> {
+            for (long l = -256; ; l -= 256) single.add(l);
+        }, "allocation not retried"));
+
+        var keys = keys();
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> run(t -> {
+            for (long l : keys[t]) {
+                for (; ; ) {
+                    try {
+                        clbhs.add(l);
+                        break;
+                    } catch (OutOfMemoryError expected) {
+                        // Retried as would an application that freed memory in the meantime.
+                    }
+                }
+            }
+        }));
+        assertTrue(failures.get() >= THREADS, "allocation never failed");
+
+        var lohs = new LongOpenHashSet();
+        for (var k : keys) for (long l : k) lohs.add(l);
+        assertEquals(lohs.size(), clbhs.size(), "size mismatch after failed resizes");
+        assertEquals(lohs, clbhs, "content mismatch after failed resizes");
+    }
+
+    private static long[][] keys() {
+        var random = new Random(196188877885538304L);
+        var keys = new long[THREADS][PER_THREAD];
+        for (var k : keys) {
+            for (int i = 0; i < k.length; i++) {
+                // Mixes dense buckets with sparse ones so that both bucket types are raced on.
+                k[i] = (i & 1) == 0 ? random.nextLong() & 0xFFFFFL : random.nextLong() & 0xFFFFFFFFFFL;
+            }
+        }
+        return keys;
+    }
+
+    private static void run(IntConsumer task) throws InterruptedException {
+        var barrier = new CyclicBarrier(THREADS);
+        var threads = new Thread[THREADS];
+        var failure = new Throwable[1];
+        for (int i = 0; i < THREADS; i++) {
+            int t = i;
+            (threads[i] = new Thread(() -> {
+                try {
+                    barrier.await();
+                    task.accept(t);
+                } catch (Throwable e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            })).start();
+        }
+        for (var thread : threads) thread.join();
+        if (failure[0] != null) throw new AssertionError(failure[0]);
+    }
+}
@@ -0,0 +1,153 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T13:48:05
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class DirectLongBitHashSetTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void addRemove32768() {
+        try (var dlbhs = new DirectLongBitHashSet()) {
+            var lohs = new LongOpenHashSet();
+
+            for (int i = 0; i < 32768; i++) {
+                long rnd = random.nextLong() & 0xFFFFFFFFL;
+                assertEquals(lohs.add(rnd), dlbhs.add(rnd), "dlbhs: bad add return");
+                assertTrue(dlbhs.contains(rnd), "dlbhs: failed to add");
+            }
+
+            assertEquals(lohs.size(), dlbhs.size(), "size mismatch");
+            assertEquals(lohs, dlbhs, "lohs -> dlbhs content mismatch");
+            assertEquals(dlbhs, lohs, "dlbhs -> lohs content mismatch");
+
+            for (var itr = dlbhs.iterator(); itr.hasNext(); ) {
+                long l = itr.nextLong();
+                if ((l & 1) == 0) {
+                    itr.remove();
+                    assertTrue(lohs.remove(l), "dlbhs: iterator produced non-existent long");
+                }
+            }
+
+            assertEquals(lohs.size(), dlbhs.size(), "size mismatch after removal");
+            assertEquals(lohs, dlbhs, "content mismatch after removal");
+
+            dlbhs.clear();
+            assertTrue(dlbhs.isEmpty(), "clear left a size behind");
+            assertFalse(dlbhs.iterator().hasNext(), "clear left a long behind");
+        }
+    }
+
+    @Test
+    public void purge() {
+        try (var dlbhs = new DirectLongBitHashSet()) {
+            var lohs = new LongOpenHashSet();
+            long[] window = new long[4096];
+            for (int i = 0; i < window.length; i++) {
+                dlbhs.add(window[i] = random.nextLong());
+                lohs.add(window[i]);
+            }
+            final long footprint = dlbhs.footprint();
+
+            // Cycling the keys through must reclaim the emptied slots rather than growing without bound.
+            for (int round = 0; round < 64; round++) {
+                for (int i = 0; i < window.length; i++) {
+                    assertTrue(dlbhs.remove(window[i]), "dlbhs: failed to remove in round " + round);
+                    lohs.remove(window[i]);
+                    long rnd = random.nextLong();
+                    assertEquals(lohs.add(rnd), dlbhs.add(rnd), "dlbhs: bad add return in round " + round);
+                    window[i] = rnd;
+                }
+                assertTrue(dlbhs.footprint() <= 2 * footprint, "directory grew with a stable size in round " + round);
+            }
+            assertEquals(lohs.size(), dlbhs.size(), "size mismatch after purging");
+            assertEquals(lohs, dlbhs, "content mismatch after purging");
+        }
+    }
+
+    @Test
+    public void inlineAndDense() {
+        try (var dlbhs = new DirectLongBitHashSet()) {
+            var lohs = new LongOpenHashSet();
+            for (int i = 0; i < 32768; i++) {
+                long rnd = random.nextLong();
+                dlbhs.add(rnd);
+                lohs.add(rnd);
+            }
+            // Sparse longs stay inline within the directory.
+            assertTrue(dlbhs.footprint() <= 32L * lohs.size(), "sparse longs cost " + dlbhs.footprint() / lohs.size() + " bytes");
+
+            // Filling buckets past the inline bytes moves them into the slab, then removing moves them back.
+            for (long l = 1L << 32; l < (1L << 32) + 65536; l += 3) {
+                assertEquals(lohs.add(l), dlbhs.add(l), "dlbhs: bad add return on dense");
+            }
+            assertEquals(lohs, dlbhs, "content mismatch after densifying");
+            for (long l = 1L << 32; l < (1L << 32) + 65536; l += 3) {
+                if ((l & 63) > 2) {
+                    assertEquals(lohs.remove(l), dlbhs.remove(l), "dlbhs: bad remove return on dense");
+                }
+            }
+            for (long l = 1L << 32; l < (1L << 32) + 65536; l++) {
+                assertEquals(lohs.contains(l), dlbhs.contains(l), "contains mismatch on " + l);
+            }
+            for (int i = 0; i < 65536; i++) {
+                long rnd = random.nextLong();
+                dlbhs.add(rnd);
+                lohs.add(rnd);
+            }
+            assertEquals(lohs.size(), dlbhs.size(), "size mismatch after rehashing");
+            assertEquals(lohs, dlbhs, "lohs -> dlbhs content mismatch after rehashing");
+            assertEquals(dlbhs, lohs, "dlbhs -> lohs content mismatch after rehashing");
+        }
+    }
+
+    @Test
+    public void closed() {
+        assertTrue(DirectLongBitHashSet.freesEagerly(), "buffers left to the garbage collector");
+        var dlbhs = new DirectLongBitHashSet();
+        dlbhs.add(12);
+        dlbhs.close();
+        dlbhs.close();
+        assertThrows(IllegalStateException.class, () -> dlbhs.contains(12), "contains after close");
+        assertThrows(IllegalStateException.class, () -> dlbhs.add(12), "add after close");
+    }
+
+    @Test
+    public void iteratorInvalidation() {
+        try (var dlbhs = new DirectLongBitHashSet()) {
+            for (long i = 0; i < 4; i++) dlbhs.add(i << 8);
+            assertEquals(4L, dlbhs.size64(), "size64 mismatch");
+
+            // Growing moves every record into a new buffer, invalidating the slots.
+            var itr = dlbhs.iterator();
+            itr.nextLong();
+            for (long i = 4; i < 64; i++) dlbhs.add(i << 8);
+            assertThrows(ConcurrentModificationException.class, itr::hasNext, "hasNext after grow");
+
+            itr = dlbhs.iterator();
+            itr.nextLong();
+            dlbhs.clear();
+            assertThrows(ConcurrentModificationException.class, itr::hasNext, "hasNext after clear");
+
+            dlbhs.add(1);
+            dlbhs.add(2);
+            itr = dlbhs.iterator();
+            itr.nextLong();
+            dlbhs.close();
+            assertThrows(IllegalStateException.class, itr::hasNext, "hasNext after close");
+            assertThrows(IllegalStateException.class, itr::nextLong, "nextLong after close");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T23:11:40
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class IntBitHashSetTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void addRemove32768() {
+        var ibhs = new IntBitHashSet();
+        var iohs = new IntOpenHashSet();
+
+        for (int i = 0; i < 32768; i++) {
+            int rnd = probe();
+            assertEquals(iohs.add(rnd), ibhs.add(rnd), "ibhs: bad add return");
+            assertTrue(ibhs.contains(rnd), "ibhs: failed to add");
+        }
+        // A full bucket either side of zero, then a run bucket split off of one.
+        for (int i = -512; i < 512; i++) {
+            assertEquals(iohs.add(i), ibhs.add(i), "ibhs: bad add return on dense");
+        }
+        assertTrue(ibhs.add(Integer.MIN_VALUE) | ibhs.add(Integer.MAX_VALUE), "ibhs: extremes already present");
+        iohs.add(Integer.MIN_VALUE);
+        iohs.add(Integer.MAX_VALUE);
+        assertTrue(ibhs.remove(100), "ibhs: failed to split a full bucket");
+        iohs.remove(100);
+        assertContent(iohs, ibhs);
+
+        for (int i = 0; i < 32768; i++) {
+            int rnd = probe();
+            assertEquals(iohs.contains(rnd), ibhs.contains(rnd), "contains mismatch on " + rnd);
+            assertEquals(iohs.remove(rnd), ibhs.remove(rnd), "remove mismatch on " + rnd);
+        }
+        assertContent(iohs, ibhs);
+
+        for (var itr = ibhs.iterator(); itr.hasNext(); ) {
+            int i = itr.nextInt();
+            if ((i & 1) == 0) {
+                itr.remove();
+                assertTrue(iohs.remove(i), "ibhs: iterator produced non-existent int");
+            }
+        }
+        assertContent(iohs, ibhs);
+
+        // Regrowing the directory reclaims the emptied buckets.
+        for (int i = 0; i < 32768; i++) {
+            int rnd = random.nextInt();
+            assertEquals(iohs.add(rnd), ibhs.add(rnd), "ibhs: bad add return after removal");
+        }
+        assertContent(iohs, ibhs);
+
+        ibhs.clear();
+        assertTrue(ibhs.isEmpty(), "clear left a size behind");
+        assertFalse(ibhs.iterator().hasNext(), "clear left an int behind");
+    }
+
+    private static void assertContent(IntOpenHashSet expected, IntBitHashSet actual) {
+        assertEquals(expected.size(), actual.size(), "size mismatch");
+        assertEquals(expected, actual, "iohs -> ibhs content mismatch");
+        assertEquals(actual, expected, "ibhs -> iohs content mismatch");
+        var seen = new IntOpenHashSet();
+        actual.forEach((int i) -> assertTrue(seen.add(i), "forEach produced " + i + " twice"));
+        assertEquals(expected, seen, "forEach content mismatch");
+    }
+
+    private int probe() {
+        return (random.nextInt() & 1) == 0 ? random.nextInt() : random.nextInt() & 0xFFFFF;
+    }
+}
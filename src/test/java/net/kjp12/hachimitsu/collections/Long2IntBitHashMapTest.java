@@ -0,0 +1,139 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T22:19:06
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class Long2IntBitHashMapTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void putGetRemove() {
+        var l2ibhm = new Long2IntBitHashMap();
+        var l2iohm = new Long2IntOpenHashMap();
+        l2ibhm.defaultReturnValue(-1);
+        l2iohm.defaultReturnValue(-1);
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = probe();
+            assertEquals(l2iohm.put(rnd, i), l2ibhm.put(rnd, i), "l2ibhm: bad put return");
+            assertEquals(i, l2ibhm.get(rnd), "l2ibhm: failed to put");
+        }
+        for (long l = 1 << 20; l < (1 << 20) + 256; l++) {
+            assertEquals(l2iohm.put(l, (int) l), l2ibhm.put(l, (int) l), "l2ibhm: bad put return on dense");
+        }
+        assertContent(l2iohm, l2ibhm);
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = probe();
+            assertEquals(l2iohm.get(rnd), l2ibhm.get(rnd), "get mismatch on " + rnd);
+            assertEquals(l2iohm.remove(rnd), l2ibhm.remove(rnd), "remove mismatch on " + rnd);
+            assertFalse(l2ibhm.containsKey(rnd), "l2ibhm: failed to remove");
+        }
+        assertContent(l2iohm, l2ibhm);
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = random.nextLong();
+            l2iohm.put(rnd, i);
+            l2ibhm.put(rnd, i);
+        }
+        assertContent(l2iohm, l2ibhm);
+
+        l2ibhm.clear();
+        assertTrue(l2ibhm.isEmpty(), "clear left a size behind");
+        assertFalse(l2ibhm.long2IntEntrySet().iterator().hasNext(), "clear left an entry behind");
+    }
+
+    @Test
+    public void addTo() {
+        var l2ibhm = new Long2IntBitHashMap();
+        var l2iohm = new Long2IntOpenHashMap();
+
+        for (int i = 0; i < 65536; i++) {
+            long rnd = random.nextLong() & 0x3FFFFL;
+            assertEquals(l2iohm.addTo(rnd, i & 7), l2ibhm.addTo(rnd, i & 7), "addTo mismatch on " + rnd);
+        }
+        assertContent(l2iohm, l2ibhm);
+
+        for (var itr = l2ibhm.long2IntEntrySet().iterator(); itr.hasNext(); ) {
+            var entry = itr.next();
+            if ((entry.getIntValue() & 1) == 0) {
+                itr.remove();
+                l2iohm.remove(entry.getLongKey());
+            } else {
+                entry.setValue(0);
+                l2iohm.put(entry.getLongKey(), 0);
+            }
+        }
+        assertContent(l2iohm, l2ibhm);
+    }
+
+    @Test
+    public void serialization() throws IOException, ClassNotFoundException {
+        var l2ibhm = new Long2IntBitHashMap();
+        var l2iohm = new Long2IntOpenHashMap();
+        l2ibhm.defaultReturnValue(-1);
+        l2iohm.defaultReturnValue(-1);
+        for (int i = 0; i < 16384; i++) {
+            long rnd = probe();
+            l2ibhm.put(rnd, i);
+            l2iohm.put(rnd, i);
+        }
+        for (long l = 1 << 20; l < (1 << 20) + 256; l++) {
+            l2ibhm.put(l, (int) l);
+            l2iohm.put(l, (int) l);
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(l2ibhm);
+        }
+        Long2IntBitHashMap copy;
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (Long2IntBitHashMap) in.readObject();
+        }
+        assertContent(l2iohm, copy);
+        assertEquals(-1, copy.defaultReturnValue(), "default return value lost");
+
+        // The copy must remain fully usable, growing and converting its buckets as before.
+        for (int i = 0; i < 16384; i++) {
+            long rnd = probe();
+            assertEquals(l2iohm.remove(rnd), copy.remove(rnd), "remove mismatch after deserializing on " + rnd);
+            rnd = probe();
+            copy.put(rnd, i);
+            l2iohm.put(rnd, i);
+        }
+        assertContent(l2iohm, copy);
+    }
+
+    private static void assertContent(Long2IntMap expected, Long2IntBitHashMap actual) {
+        assertEquals(expected.size(), actual.size(), "size mismatch");
+        assertEquals(expected, actual, "expected -> l2ibhm content mismatch");
+        assertEquals(actual, expected, "l2ibhm -> expected content mismatch");
+        int n = 0;
+        for (var entry : actual.long2IntEntrySet()) {
+            assertEquals(expected.get(entry.getLongKey()), entry.getIntValue(), "entry mismatch on " + entry.getLongKey());
+            n++;
+        }
+        assertEquals(expected.size(), n, "iterator produced the wrong amount of entries");
+    }
+
+    private long probe() {
+        return (random.nextInt() & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+    }
+}
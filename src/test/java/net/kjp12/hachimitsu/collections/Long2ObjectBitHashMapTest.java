@@ -0,0 +1,149 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T22:02:31
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class Long2ObjectBitHashMapTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void putGetRemove() {
+        var l2obhm = new Long2ObjectBitHashMap<String>();
+        var l2oohm = new Long2ObjectOpenHashMap<String>();
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = probe();
+            String v = Long.toHexString(rnd) + '@' + i;
+            assertEquals(l2oohm.put(rnd, v), l2obhm.put(rnd, v), "l2obhm: bad put return");
+            assertEquals(v, l2obhm.get(rnd), "l2obhm: failed to put");
+        }
+        // Every key of a bucket, across the transition from a hash to a bitset.
+        for (long l = 1 << 20; l < (1 << 20) + 256; l++) {
+            String v = "dense " + l;
+            assertEquals(l2oohm.put(l, v), l2obhm.put(l, v), "l2obhm: bad put return on dense");
+        }
+        assertContent(l2oohm, l2obhm);
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = probe();
+            assertEquals(l2oohm.containsKey(rnd), l2obhm.containsKey(rnd), "containsKey mismatch on " + rnd);
+            assertEquals(l2oohm.get(rnd), l2obhm.get(rnd), "get mismatch on " + rnd);
+            assertEquals(l2oohm.remove(rnd), l2obhm.remove(rnd), "remove mismatch on " + rnd);
+            assertNull(l2obhm.get(rnd), "l2obhm: failed to remove");
+        }
+        for (long l = 1 << 20; l < (1 << 20) + 256; l += 3) {
+            assertEquals(l2oohm.remove(l), l2obhm.remove(l), "remove mismatch on dense " + l);
+        }
+        assertContent(l2oohm, l2obhm);
+
+        // Regrowing the directory demotes the now sparse buckets, which must carry their values along.
+        for (int i = 0; i < 32768; i++) {
+            long rnd = random.nextLong();
+            l2oohm.put(rnd, "late " + i);
+            l2obhm.put(rnd, "late " + i);
+        }
+        assertContent(l2oohm, l2obhm);
+
+        l2obhm.clear();
+        assertTrue(l2obhm.isEmpty(), "clear left a size behind");
+        assertFalse(l2obhm.long2ObjectEntrySet().iterator().hasNext(), "clear left an entry behind");
+    }
+
+    @Test
+    public void entries() {
+        var l2obhm = new Long2ObjectBitHashMap<Long>();
+        var l2oohm = new Long2ObjectOpenHashMap<Long>();
+        for (int i = 0; i < 16384; i++) {
+            long rnd = probe();
+            l2obhm.put(rnd, (Long) rnd);
+            l2oohm.put(rnd, (Long) rnd);
+        }
+
+        for (var itr = l2obhm.long2ObjectEntrySet().iterator(); itr.hasNext(); ) {
+            var entry = itr.next();
+            long k = entry.getLongKey();
+            assertEquals(k, (long) entry.getValue(), "entry value mismatch");
+            if ((k & 1) == 0) {
+                itr.remove();
+                assertEquals(k, (long) l2oohm.remove(k), "l2obhm: iterator produced non-existent key");
+            } else {
+                entry.setValue(~k);
+                l2oohm.put(k, (Long) ~k);
+            }
+        }
+        assertContent(l2oohm, l2obhm);
+        assertEquals(l2oohm.keySet(), l2obhm.keySet(), "key set mismatch");
+    }
+
+    @Test
+    public void serialization() throws IOException, ClassNotFoundException {
+        var l2obhm = new Long2ObjectBitHashMap<Long>();
+        var l2oohm = new Long2ObjectOpenHashMap<Long>();
+        l2obhm.defaultReturnValue((Long) (-1L));
+        l2oohm.defaultReturnValue((Long) (-1L));
+        for (int i = 0; i < 16384; i++) {
+            long rnd = probe();
+            l2obhm.put(rnd, (Long) (long) i);
+            l2oohm.put(rnd, (Long) (long) i);
+        }
+        for (long l = 1 << 20; l < (1 << 20) + 256; l++) {
+            l2obhm.put(l, (Long) l);
+            l2oohm.put(l, (Long) l);
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(l2obhm);
+        }
+        Long2ObjectBitHashMap<Long> copy;
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            @SuppressWarnings("unchecked") var read = (Long2ObjectBitHashMap<Long>) in.readObject();
+            copy = read;
+        }
+        assertContent(l2oohm, copy);
+        assertEquals((Long) (-1L), copy.defaultReturnValue(), "default return value lost");
+
+        // The copy must remain fully usable, growing and converting its buckets as before.
+        for (int i = 0; i < 16384; i++) {
+            long rnd = probe();
+            assertEquals(l2oohm.remove(rnd), copy.remove(rnd), "remove mismatch after deserializing on " + rnd);
+            rnd = probe();
+            copy.put(rnd, (Long) (long) i);
+            l2oohm.put(rnd, (Long) (long) i);
+        }
+        assertContent(l2oohm, copy);
+    }
+
+    private static void assertContent(Long2ObjectMap<?> expected, Long2ObjectBitHashMap<?> actual) {
+        assertEquals(expected.size(), actual.size(), "size mismatch");
+        assertEquals(expected, actual, "expected -> l2obhm content mismatch");
+        assertEquals(actual, expected, "l2obhm -> expected content mismatch");
+        int n = 0;
+        for (var entry : actual.long2ObjectEntrySet()) {
+            assertEquals(expected.get(entry.getLongKey()), entry.getValue(), "entry mismatch on " + entry.getLongKey());
+            n++;
+        }
+        assertEquals(expected.size(), n, "iterator produced the wrong amount of entries");
+    }
+
+    private long probe() {
+        return (random.nextInt() & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+    }
+}
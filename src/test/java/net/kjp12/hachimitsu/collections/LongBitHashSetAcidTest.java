@@ -3,11 +3,28 @@ package net.kjp12.hachimitsu.collections;// Created 2022-31-03T15:47:06
 import it.unimi.dsi.fastutil.longs.LongCollection;
 import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSpliterator;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -58,6 +75,887 @@ public class LongBitHashSetAcidTest {
         sinkIterator(lbhs, lbhs.new j$itr2(), size);
     }
 
+    @Test
+    public void addHighBitCollisions() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        // Relatives only differing at bit 40+ used to force the directory to grow by collision distance.
+        for (long i = 0; i < 32768; i++) {
+            long l = (i << 40) | (random.nextLong() & 0xFFL);
+            assertEquals(lohs.add(l), lbhs.add(l), "lbhs: bad return");
+            assertTrue(lbhs.contains(l), "lbhs: failed to add");
+        }
+
+        assertEquals(lohs.size(), lbhs.size(), "size mismatch");
+        assertEquals(lohs, lbhs, "lohs -> lbhs content mismatch");
+        assertEquals(lbhs, lohs, "lbhs -> lohs content mismatch");
+
+        sinkIterator(lbhs, lbhs.iterator(), lohs.size());
+    }
+
+    @Test
+    public void bulkAlgebra() {
+        var la = new LongBitHashSet();
+        var lb = new LongBitHashSet();
+        var oa = new LongOpenHashSet();
+        var ob = new LongOpenHashSet();
+
+        // Small range so that both sparse hash buckets and dense bitset buckets end up overlapping.
+        for (int i = 0; i < 32768; i++) {
+            long a = random.nextLong() & 0x7FFFFL, b = random.nextLong() & 0x7FFFFL;
+            if ((i & 7) == 0) {
+                a |= random.nextLong() & 0xFFFFF00000L;
+            }
+            la.add(a);
+            oa.add(a);
+            lb.add(b);
+            ob.add(b);
+        }
+
+        assertAlgebra(oa, ob, LongBitHashSet.union(la, lb), LongOpenHashSet::addAll, "or");
+        assertAlgebra(oa, ob, LongBitHashSet.intersection(la, lb), LongOpenHashSet::retainAll, "and");
+        assertAlgebra(oa, ob, LongBitHashSet.difference(la, lb), LongOpenHashSet::removeAll, "andNot");
+        assertAlgebra(oa, ob, LongBitHashSet.symmetricDifference(la, lb), (x, y) -> {
+            var t = new LongOpenHashSet(y);
+            t.removeAll(x);
+            x.removeAll(y);
+            x.addAll(t);
+        }, "xor");
+
+        var copy = new LongBitHashSet(la);
+        assertTrue(copy.removeAll(lb), "removeAll: expected change");
+        assertTrue(copy.addAll(lb), "addAll: expected change");
+        assertFalse(copy.addAll(lb), "addAll: unexpected change");
+        assertTrue(copy.retainAll(la), "retainAll: expected change");
+        assertEquals(oa, copy, "round trip mismatch");
+        assertEquals(oa, la, "source was modified");
+    }
+
+    @Test
+    public void serialization() throws IOException {
+        var lbhs = new LongBitHashSet();
+        for (int i = 0; i < 32768; i++) {
+            lbhs.add((i & 1) == 0 ? random.nextLong() & 0xFFFFFL : random.nextLong());
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        lbhs.write((DataOutput) new DataOutputStream(bytes));
+        var read = LongBitHashSet.read((DataInput) new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(lbhs.size(), read.size(), "DataOutput: size mismatch");
+        assertEquals(lbhs, read, "DataOutput: content mismatch");
+        sinkIterator(read, read.iterator(), lbhs.size());
+
+        // Trailing data must be left in the channel for the next reader.
+        bytes.reset();
+        var out = Channels.newChannel(bytes);
+        lbhs.write(out);
+        out.write(ByteBuffer.wrap(new byte[]{12}));
+        var in = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        read = LongBitHashSet.read(in);
+        assertEquals(lbhs, read, "WritableByteChannel: content mismatch");
+        var trailing = ByteBuffer.allocate(2);
+        assertEquals(1, in.read(trailing), "WritableByteChannel: read past the set");
+        assertEquals(12, trailing.get(0), "WritableByteChannel: read past the set");
+    }
+
+    @Test
+    public void denseTransitions() throws IOException {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        for (long i = 0; i < 0x10000; i++) {
+            assertTrue(lbhs.add(i), "lbhs: bad return on sequential add");
+            lohs.add(i);
+        }
+        assertEquals(lohs, lbhs, "sequential content mismatch");
+
+        // Biased towards adding while churning a small range, going through every bucket type both ways.
+        for (int i = 0; i < 262144; i++) {
+            long rnd = random.nextLong() & 0x7FFL;
+            if (random.nextInt(4) == 0 ^ (i & 65536) != 0) {
+                assertEquals(lohs.remove(rnd), lbhs.remove(rnd), "lbhs: bad remove return");
+            } else {
+                assertEquals(lohs.add(rnd), lbhs.add(rnd), "lbhs: bad add return");
+            }
+            assertEquals(lohs.contains(rnd), lbhs.contains(rnd), "lbhs: contains mismatch");
+        }
+
+        assertEquals(lohs.size(), lbhs.size(), "size mismatch");
+        assertEquals(lohs, lbhs, "lohs -> lbhs content mismatch");
+        assertEquals(lbhs, lohs, "lbhs -> lohs content mismatch");
+        sinkIterator(lbhs, lbhs.iterator(), lohs.size());
+        sinkIterator(lbhs, lbhs.new j$itr2(), lohs.size());
+
+        var bytes = new ByteArrayOutputStream();
+        lbhs.write((DataOutput) new DataOutputStream(bytes));
+        var read = LongBitHashSet.read((DataInput) new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(lohs, read, "serialization content mismatch");
+
+        // Full buckets are immutable, being replaced rather than emptied in place.
+        var full = new LongBitHashSet();
+        for (long i = 0; i < 256; i++) full.add(i);
+        var bucket = full.fetch0(0);
+        assertTrue(bucket instanceof LongBitFullBucket, "expected a full bucket, got " + bucket);
+        assertTrue(full.and(new LongBitHashSet()), "and against nothing didn't change");
+        assertNotSame(bucket, full.fetch0(0), "and against nothing left the full bucket in the directory");
+        assertTrue(full.isEmpty(), "and against nothing left longs behind");
+        assertFalse(full.contains(0), "and against nothing left a full bucket behind");
+        assertEquals(256, bucket.size(), "full bucket changed size");
+        assertTrue(bucket.contains(0), "full bucket lost a long");
+
+        // Ranges filled out of order become bitsets and hash buckets, and are packed into runs once trimmed.
+        var ranges = new LongBitHashSet();
+        var expected = new LongOpenHashSet();
+        var order = new long[512];
+        for (int i = 0; i < 512; i++) order[i] = i < 256 ? 1 << 20 | i : 2 << 20 | i & 255;
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        for (long l : order) {
+            int b = (int) l & 255;
+            boolean first = (l & 1 << 20) != 0;
+            if (first ? b < 40 || b >= 100 && b < 180 || b == 200 : b >= 7 && b < 11 || b == 30) {
+                ranges.add(l);
+                expected.add(l);
+            }
+        }
+        // Scattered longs are left as is.
+        for (long l : new long[]{3 << 20 | 1, 3 << 20 | 5, 3 << 20 | 9}) {
+            ranges.add(l);
+            expected.add(l);
+        }
+        assertTrue(ranges.fetch0(1 << 20) instanceof LongBitSetBucket, "expected a bitset before trim");
+        assertTrue(ranges.fetch0(2 << 20) instanceof LongBitHashBucket, "expected a hash bucket before trim");
+        ranges.trim();
+        assertTrue(ranges.fetch0(1 << 20) instanceof LongBitRunBucket, "bitset not packed into runs");
+        assertTrue(ranges.fetch0(2 << 20) instanceof LongBitRunBucket, "hash bucket not packed into runs");
+        assertTrue(ranges.fetch0(3 << 20) instanceof LongBitHashBucket, "scattered hash bucket packed into runs");
+        assertEquals(expected, ranges, "content mismatch after packing into runs");
+        sinkIterator(ranges, ranges.iterator(), expected.size());
+        assertTrue(ranges.add(1 << 20 | 255), "failed to add past the runs");
+        expected.add(1 << 20 | 255);
+        assertEquals(expected, ranges, "content mismatch after promoting the runs");
+    }
+
+    @Test
+    public void spliterator() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        for (int i = 0; i < 65536; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+            lbhs.add(rnd);
+            lohs.add(rnd);
+        }
+        for (long i = 1 << 24; i < (1 << 24) + 1024; i++) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+
+        assertEquals(lohs.size(), lbhs.longParallelStream().count(), "parallel count mismatch");
+        assertEquals(lohs.longStream().sum(), lbhs.longParallelStream().sum(), "parallel sum mismatch");
+
+        var seen = new LongOpenHashSet();
+        sinkSpliterator(lbhs, lbhs.spliterator(), seen, 0);
+        assertEquals(lohs, seen, "spliterator content mismatch");
+    }
+
+    @Test
+    public void batchedAdd() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        // Pre-existing hash, bitset, full and cleared buckets for the batches to land in.
+        for (long i = 0; i < 256; i++) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+        for (long i = 256; i < 512; i += 3) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+        lbhs.add(1024);
+        lohs.add(1024);
+
+        for (int round = 0; round < 64; round++) {
+            var batch = new long[4096];
+            long base = random.nextLong() & 0xFFFFFL;
+            for (int i = 0; i < batch.length; i++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        batch[i] = random.nextLong();
+                        break;
+                    case 1:
+                        batch[i] = random.nextLong() & 0x7FFL;
+                        break;
+                    default:
+                        batch[i] = base + random.nextInt(2048);
+                }
+            }
+            int off = random.nextInt(64), len = batch.length - off - random.nextInt(64);
+            boolean changed = false;
+            for (int i = off; i < off + len; i++) changed |= lohs.add(batch[i]);
+            assertEquals(changed, lbhs.addAll(batch, off, len), "lbhs: bad addAll return");
+            assertEquals(lohs.size(), lbhs.size(), "size mismatch after batch");
+        }
+        assertEquals(lohs, lbhs, "content mismatch after batches");
+        assertFalse(lbhs.addAll(lohs.toLongArray()), "lbhs: re-adding changed the set");
+
+        var collection = new LongOpenHashSet();
+        for (int i = 0; i < 4096; i++) collection.add(random.nextLong() & 0xFFFFFFL);
+        lohs.addAll(collection);
+        lbhs.addAll(collection);
+        assertEquals(lohs, lbhs, "content mismatch after collection");
+        sinkIterator(lbhs, lbhs.iterator(), lohs.size());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> lbhs.addAll(new long[4], 2, 3), "out of bounds range");
+    }
+
+    @Test
+    public void batchedContains() {
+        for (var span : LongBitHashSet.Span.values()) {
+            var lbhs = new LongBitHashSet(span);
+            // Hash, bitset, full, run and cleared buckets for the probes to land in.
+            for (int i = 0; i < 16384; i++) lbhs.add((i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL);
+            for (long i = 1 << 24; i < (1 << 24) + 512; i++) lbhs.add(i);
+            lbhs.remove((1 << 24) + 300);
+            lbhs.add(1L << 40);
+            lbhs.remove(1L << 40);
+
+            var keys = new long[4096];
+            for (int i = 0; i < keys.length; i++) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        keys[i] = random.nextLong();
+                        break;
+                    case 1:
+                        keys[i] = (1 << 24) + random.nextInt(1024);
+                        break;
+                    default:
+                        keys[i] = random.nextLong() & 0xFFFFFL;
+                }
+            }
+            keys[7] = 1L << 40;
+            for (int round = 0; round < 16; round++) {
+                int off = random.nextInt(64), len = keys.length - off - random.nextInt(128);
+                var bitmap = new long[(len + 63 >>> 6) + 1];
+                bitmap[bitmap.length - 1] = -1L;
+                int expected = 0;
+                for (int i = 0; i < len; i++) if (lbhs.contains(keys[off + i])) expected++;
+                assertEquals(expected, lbhs.contains(keys, off, len, bitmap), span + ": hit count mismatch");
+                assertEquals(expected, lbhs.contains(keys, off, len, null), span + ": hit count mismatch without bitmap");
+                for (int i = 0; i < len; i++) {
+                    assertEquals(lbhs.contains(keys[off + i]), (bitmap[i >>> 6] & 1L << i) != 0, span + ": bit mismatch at " + i);
+                }
+                if ((len & 63) != 0) {
+                    assertEquals(0, bitmap[len >>> 6] >>> (len & 63), span + ": bits set past the range");
+                }
+                assertEquals(-1L, bitmap[bitmap.length - 1], span + ": wrote past the range");
+            }
+            assertEquals(0, lbhs.contains(keys, 0, 0, new long[0]), span + ": empty range");
+            assertThrows(IndexOutOfBoundsException.class, () -> lbhs.contains(keys, 0, 65, new long[1]), span + ": short bitmap");
+            assertThrows(IndexOutOfBoundsException.class, () -> lbhs.contains(new long[4], 2, 3, null), span + ": out of bounds range");
+        }
+    }
+
+    @Test
+    public void shrinking() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        for (int i = 0; i < 65536; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() & 0xFFFFFFFFL : random.nextLong() & 0xFFFFFL;
+            lbhs.add(rnd);
+            lohs.add(rnd);
+        }
+        final int peak = lbhs.buckets.length;
+
+        for (var itr = lohs.iterator(); itr.hasNext(); ) {
+            long l = itr.nextLong();
+            if (random.nextInt(64) != 0) {
+                assertTrue(lbhs.remove(l), "lbhs: failed to remove");
+                itr.remove();
+            }
+        }
+        assertEquals(lohs.size(), lbhs.size(), "size mismatch after removal");
+        assertEquals(lohs, lbhs, "content mismatch after removal");
+        assertTrue(lbhs.buckets.length < peak, "directory didn't shrink");
+
+        lbhs.trim();
+        assertEquals(lohs, lbhs, "content mismatch after trim");
+        for (var bucket : lbhs.buckets) {
+            if (bucket == null) continue;
+            assertTrue(bucket.size() != 0, "trim left an empty bucket");
+            assertFalse(bucket instanceof LongBitSetBucket && bucket.size() <= LongBitSetBucket.DEMOTE_SIZE
+                    && LongBitHashBucket.pack(bucket) != null, "trim left a sparse bitset");
+        }
+
+        // A sliding window churning through relatives mustn't keep growing the directory.
+        lbhs.clear();
+        assertEquals(8, lbhs.buckets.length, "clear didn't release the directory");
+        for (long i = 0; i < 1 << 20; i++) {
+            lbhs.add(i << 8);
+            if (i >= 1024) assertTrue(lbhs.remove((i - 1024) << 8), "lbhs: failed to remove from window");
+        }
+        assertEquals(1024, lbhs.size(), "window size mismatch");
+        assertTrue(lbhs.buckets.length <= 4096, "directory grew with the window: " + lbhs.buckets.length);
+        for (long i = (1 << 20) - 1024; i < 1 << 20; i++) {
+            assertTrue(lbhs.contains(i << 8), "window lost " + (i << 8));
+        }
+    }
+
+    @Test
+    public void stats() {
+        var lbhs = new LongBitHashSet();
+        var empty = lbhs.stats();
+        assertEquals(0, empty.size(), "empty size");
+        assertEquals(0, empty.occupied(), "empty occupied");
+
+        for (int i = 0; i < 16384; i++) lbhs.add(random.nextLong() & 0xFFFFFFL);
+        for (long i = 1 << 24; i < (1 << 24) + 256; i++) lbhs.add(i);
+        for (long i = 1 << 25; i < (1 << 25) + 512; i++) lbhs.add(i);
+        lbhs.remove((1 << 25) + 300);
+
+        var stats = lbhs.stats();
+        assertEquals(lbhs.size(), stats.size(), "size mismatch");
+        assertEquals(lbhs.buckets.length, stats.directoryLength(), "directory length mismatch");
+        assertEquals(stats.occupied(), stats.hashBuckets() + stats.bitSetBuckets() + stats.fullBuckets() + stats.runBuckets(),
+                "bucket types don't sum to occupied");
+        assertEquals(stats.hashBuckets(), stats.hashBucketsOfLength(4) + stats.hashBucketsOfLength(8) + stats.hashBucketsOfLength(16),
+                "hash array lengths don't sum to hash buckets");
+        assertTrue(stats.fullBuckets() >= 2, "missing full buckets");
+        assertTrue(stats.runBuckets() >= 1, "missing run bucket");
+
+        long longs = 0;
+        int buckets = 0;
+        for (int i = 0; i <= 256; i++) {
+            longs += (long) i * stats.bucketsOfSize(i);
+            buckets += stats.bucketsOfSize(i);
+        }
+        assertEquals(stats.size(), longs, "size histogram doesn't sum to size");
+        assertEquals(stats.occupied(), buckets, "size histogram doesn't sum to occupied");
+        assertTrue(stats.estimatedBytes() > empty.estimatedBytes(), "estimate didn't grow");
+    }
+
+    @Test
+    public void freeze() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+        assertTrue(lbhs.freeze().isEmpty(), "frozen empty set has longs");
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+            lbhs.add(rnd);
+            lohs.add(rnd);
+        }
+        for (long i = -512; i < 512; i++) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+        lbhs.remove(100);
+        lohs.remove(100);
+
+        var frozen = lbhs.freeze();
+        assertEquals(lohs.size(), frozen.size(), "size mismatch");
+        assertEquals(lohs, frozen, "lohs -> frozen content mismatch");
+        assertEquals(frozen, lohs, "frozen -> lohs content mismatch");
+        sinkIterator(frozen, frozen.iterator(), lohs.size());
+        for (int i = 0; i < 32768; i++) {
+            long rnd = random.nextLong() & 0xFFFFFL;
+            assertEquals(lohs.contains(rnd), frozen.contains(rnd), "contains mismatch on " + rnd);
+        }
+
+        long last = Long.MIN_VALUE;
+        for (var itr = frozen.iterator(); itr.hasNext(); ) {
+            long l = itr.nextLong();
+            assertTrue(l >= last, "frozen iterator out of order");
+            last = l;
+        }
+
+        lbhs.clear();
+        assertEquals(lohs, frozen, "frozen set changed with the original");
+        assertThrows(UnsupportedOperationException.class, () -> frozen.add(1L << 40), "frozen add");
+        assertThrows(UnsupportedOperationException.class, () -> frozen.remove(0), "frozen remove");
+
+        // Sparse buckets of the widest span are packed as keys, beside a dense bucket packed as a bitset.
+        var wide = new LongBitHashSet(LongBitHashSet.Span.S65536);
+        lohs.clear();
+        for (int i = 0; i < 32768; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFFFFL;
+            wide.add(rnd);
+            lohs.add(rnd);
+        }
+        for (long i = 1L << 40; i < (1L << 40) + 8192; i++) {
+            wide.add(i);
+            lohs.add(i);
+        }
+        wide.remove((1L << 40) + 100);
+        lohs.remove((1L << 40) + 100);
+
+        var sparse = wide.freeze();
+        assertEquals(lohs.size(), sparse.size(), "S65536: size mismatch");
+        assertEquals(lohs, sparse, "S65536: lohs -> frozen content mismatch");
+        assertEquals(sparse, lohs, "S65536: frozen -> lohs content mismatch");
+        sinkIterator(sparse, sparse.iterator(), lohs.size());
+        for (int i = 0; i < 32768; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() & 0xFFFFFFFFL : (1L << 40) + (random.nextLong() & 0x3FFFFL);
+            assertEquals(lohs.contains(rnd), sparse.contains(rnd), "S65536: contains mismatch on " + rnd);
+        }
+        var seen = new LongOpenHashSet();
+        last = Long.MIN_VALUE;
+        for (var itr = sparse.iterator(); itr.hasNext(); ) {
+            long l = itr.nextLong();
+            assertTrue(l >= last, "S65536: frozen iterator out of order");
+            last = l;
+        }
+        sparse.forEach((long l) -> assertTrue(seen.add(l), "S65536: frozen forEach produced " + l + " twice"));
+        assertEquals(lohs, seen, "S65536: frozen forEach content mismatch");
+    }
+
+    @Test
+    public void snapshot() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+            lbhs.add(rnd);
+            lohs.add(rnd);
+        }
+        // A full bucket and a run bucket.
+        for (long i = 1 << 24; i < (1 << 24) + 512; i++) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+        lbhs.remove((1 << 24) + 300);
+        lohs.remove((1 << 24) + 300);
+
+        var snapshot = lbhs.snapshot();
+        var expected = new LongOpenHashSet(lohs);
+        assertEquals(expected, snapshot, "snapshot content mismatch");
+
+        // Modifying the original through every path must leave the snapshot untouched.
+        for (int i = 0; i < 16384; i++) {
+            long rnd = random.nextLong() & 0xFFFFFL;
+            assertEquals(lohs.add(rnd), lbhs.add(rnd), "lbhs: bad add return after snapshot");
+            rnd = random.nextLong() & 0xFFFFFL;
+            assertEquals(lohs.remove(rnd), lbhs.remove(rnd), "lbhs: bad remove return after snapshot");
+        }
+        lbhs.remove(1 << 24);
+        lohs.remove(1 << 24);
+        lbhs.add((1 << 24) + 300);
+        lohs.add((1 << 24) + 300);
+        lbhs.addAll(new long[]{1, 2, 3, 1 << 24 | 256, 5 << 20});
+        lohs.addAll(LongOpenHashSet.of(1, 2, 3, 1 << 24 | 256, 5 << 20));
+        var other = new LongBitHashSet();
+        for (int i = 0; i < 4096; i++) other.add(random.nextLong() & 0xFFFFFL);
+        lbhs.xor(other);
+        for (long l : other) if (!lohs.remove(l)) lohs.add(l);
+        assertEquals(lohs, lbhs, "lbhs content mismatch after modification");
+        assertEquals(expected, snapshot, "snapshot changed with the original");
+
+        // Once the original copied a bucket away, the snapshot is its only holder and may modify it in place.
+        var owned = snapshot.fetch0(1 << 24 | 256);
+        assertNotSame(owned, lbhs.fetch0(1 << 24 | 256), "lbhs still shares a modified bucket");
+        assertFalse(owned.shared(), "bucket still shared after the original copied it");
+        snapshot.remove((1 << 24) + 400);
+        expected.remove((1 << 24) + 400);
+        assertSame(owned, snapshot.fetch0(1 << 24 | 256), "snapshot copied a bucket it solely holds");
+
+        // And the other way around, including bulk operations over shared buckets.
+        var second = lbhs.snapshot();
+        var secondExpected = new LongOpenHashSet(lohs);
+        snapshot.and(other);
+        expected.retainAll(other);
+        assertEquals(expected, snapshot, "snapshot content mismatch after and");
+        snapshot.or(second);
+        expected.addAll(secondExpected);
+        assertEquals(expected, snapshot, "snapshot content mismatch after or");
+        second.andNot(other);
+        secondExpected.removeAll(other);
+        assertEquals(secondExpected, second, "second snapshot content mismatch after andNot");
+        assertEquals(lohs, lbhs, "lbhs changed with its snapshots");
+
+        lbhs.clear();
+        assertEquals(expected, snapshot, "snapshot changed with clear");
+        assertEquals(secondExpected, second, "second snapshot changed with clear");
+    }
+
+    @Test
+    public void spans() throws IOException {
+        for (var span : new LongBitHashSet.Span[]{LongBitHashSet.Span.S4096, LongBitHashSet.Span.S65536}) {
+            var lbhs = new LongBitHashSet(span);
+            var lohs = new LongOpenHashSet();
+            assertEquals(span, lbhs.span(), span + ": span mismatch");
+
+            // Churning a range spanning several wide buckets, going through both hash and bitset buckets.
+            for (int i = 0; i < 131072; i++) {
+                long rnd = random.nextLong() & 0x3FFFFL;
+                if ((i & 3) == 0) rnd = random.nextLong();
+                if (random.nextInt(4) == 0 ^ (i & 65536) != 0) {
+                    assertEquals(lohs.remove(rnd), lbhs.remove(rnd), span + ": bad remove return");
+                } else {
+                    assertEquals(lohs.add(rnd), lbhs.add(rnd), span + ": bad add return");
+                }
+                assertEquals(lohs.contains(rnd), lbhs.contains(rnd), span + ": contains mismatch");
+            }
+            assertEquals(lohs.size(), lbhs.size(), span + ": size mismatch");
+            assertEquals(lohs, lbhs, span + ": content mismatch");
+            sinkIterator(lbhs, lbhs.iterator(), lbhs.size());
+
+            var dense = new long[8192];
+            for (int i = 0; i < dense.length; i++) dense[i] = random.nextLong() & 0x1FFFFL;
+            var other = new LongBitHashSet(span);
+            var expected = new LongOpenHashSet(dense);
+            assertTrue(other.addAll(dense), span + ": addAll: expected change");
+            assertEquals(expected, other, span + ": addAll content mismatch");
+
+            assertAlgebra(lohs, expected, LongBitHashSet.union(lbhs, other), LongOpenHashSet::addAll, span + ": or");
+            assertAlgebra(lohs, expected, LongBitHashSet.intersection(lbhs, other), LongOpenHashSet::retainAll, span + ": and");
+            assertAlgebra(lohs, expected, LongBitHashSet.difference(lbhs, other), LongOpenHashSet::removeAll, span + ": andNot");
+            assertThrows(IllegalArgumentException.class, () -> lbhs.or(new LongBitHashSet()), span + ": mixed spans");
+
+            // Sets of differing spans still combine long by long.
+            var narrow = new LongBitHashSet();
+            assertTrue(narrow.addAll(lbhs), span + ": addAll across spans: expected change");
+            assertEquals(lohs, narrow, span + ": addAll across spans content mismatch");
+            assertThrows(IllegalArgumentException.class, () -> new SortedLongBitHashSet(lbhs), span + ": sorted");
+
+            var bytes = new ByteArrayOutputStream();
+            lbhs.write((DataOutput) new DataOutputStream(bytes));
+            var read = LongBitHashSet.read((DataInput) new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertEquals(span, read.span(), span + ": DataOutput: span mismatch");
+            assertEquals(lohs, read, span + ": DataOutput: content mismatch");
+            bytes.reset();
+            lbhs.write(Channels.newChannel(bytes));
+            read = LongBitHashSet.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+            assertEquals(span, read.span(), span + ": WritableByteChannel: span mismatch");
+            assertEquals(lohs, read, span + ": WritableByteChannel: content mismatch");
+
+            var frozen = lbhs.freeze();
+            assertEquals(lohs, frozen, span + ": frozen content mismatch");
+            var seen = new LongOpenHashSet();
+            frozen.forEach((long l) -> assertTrue(seen.add(l), span + ": frozen forEach produced " + l + " twice"));
+            assertEquals(lohs, seen, span + ": frozen forEach content mismatch");
+
+            assertTrue(lbhs.removeIf(l -> (l & 0x3FFFFL) != l), span + ": removeIf didn't change");
+            lohs.removeIf(l -> (l & 0x3FFFFL) != l);
+            lbhs.trim();
+            assertEquals(lohs, lbhs, span + ": trim content mismatch");
+            assertTrue(lbhs.stats().hashBuckets() + lbhs.stats().bitSetBuckets() <= (0x40000 >>> span.ordinal() * 4 >>> 8),
+                    span + ": more buckets than relatives");
+
+            // Keys sharing their low bits stay as keys until they'd cost as much as the bitset.
+            var sparse = new LongBitHashSet(span);
+            final int longs = span.longs();
+            for (long i = 0; i < longs; i += 16) sparse.add(i);
+            var stats = sparse.stats();
+            assertEquals(1, stats.hashBuckets(), span + ": sparse keys promoted early");
+            assertEquals(1, stats.hashBucketsOfLength(longs / 16), span + ": sparse keys not packed");
+            assertTrue(stats.estimatedBytes() < longs / 8 + 256, span + ": sparse keys footprint " + stats.estimatedBytes());
+            for (long i = 0; i < longs; i += 16) assertTrue(sparse.contains(i), span + ": sparse contains");
+            sparse.add(1);
+            assertEquals(1, sparse.stats().bitSetBuckets(), span + ": sparse keys not promoted once over the limit");
+            sparse.removeIf(l -> (l & 127) != 0);
+            sparse.trim();
+            assertEquals(longs / 128, sparse.size(), span + ": sparse size after removeIf");
+            assertEquals(1, sparse.stats().hashBuckets(), span + ": sparse keys not demoted");
+            for (long i = 0; i < longs; i++) assertEquals((i & 127) == 0, sparse.contains(i), span + ": sparse contains after demote");
+        }
+    }
+
+    @Test
+    public void rankSelect() {
+        for (var span : LongBitHashSet.Span.values()) {
+            var lbhs = new LongBitHashSet(span);
+            for (int i = 0; i < 16384; i++) {
+                lbhs.add((i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL);
+            }
+            // A full bucket, then a run bucket split off of one.
+            for (long i = -(1 << 24); i < -(1 << 24) + 512; i++) lbhs.add(i);
+            lbhs.remove(-(1 << 24) + 300);
+
+            for (int round = 0; round < 2; round++) {
+                var sorted = lbhs.toLongArray();
+                Arrays.sort(sorted);
+                for (int k = 0; k < sorted.length; k++) {
+                    assertEquals(sorted[k], lbhs.select(k), span + ": select mismatch at " + k);
+                    assertEquals(k, lbhs.rank(sorted[k]), span + ": rank mismatch of " + sorted[k]);
+                }
+                for (int i = 0; i < 4096; i++) {
+                    long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+                    int k = Arrays.binarySearch(sorted, rnd);
+                    assertEquals(k < 0 ? ~k : k, lbhs.rank(rnd), span + ": rank mismatch of " + rnd);
+                }
+                assertEquals(0, lbhs.rank(Long.MIN_VALUE), span + ": rank of the minimum");
+                assertThrows(IndexOutOfBoundsException.class, () -> lbhs.select(lbhs.size()), span + ": select past the end");
+                assertThrows(IndexOutOfBoundsException.class, () -> lbhs.select(-1), span + ": select before the start");
+
+                // The index must follow modifications, including those that leave the size as is.
+                lbhs.remove(sorted[sorted.length >>> 1]);
+                lbhs.add(sorted[sorted.length >>> 1] + 1);
+                var toggle = new LongBitHashSet(span);
+                toggle.add(sorted[0]);
+                toggle.add(sorted[0] - 1);
+                lbhs.xor(toggle);
+            }
+        }
+    }
+
+    @Test
+    public void cardinality() {
+        for (var span : LongBitHashSet.Span.values()) {
+            var la = new LongBitHashSet(span);
+            var lb = new LongBitHashSet(span);
+            var oa = new LongOpenHashSet();
+            var ob = new LongOpenHashSet();
+            for (int i = 0; i < 32768; i++) {
+                long a = random.nextLong() & 0x7FFFFL, b = random.nextLong() & 0x7FFFFL;
+                if ((i & 7) == 0) {
+                    a |= random.nextLong() & 0xFFFFF00000L;
+                }
+                la.add(a);
+                oa.add(a);
+                lb.add(b);
+                ob.add(b);
+            }
+            // Full buckets on one side, and one emptied by retaining against nothing.
+            for (long i = 1 << 24; i < (1 << 24) + 512; i++) {
+                la.add(i);
+                oa.add(i);
+            }
+            var block = new LongBitHashSet(span);
+            for (long i = 1 << 24; i < (1 << 24) + 256; i++) block.add(i);
+            var emptied = new LongBitHashSet(block);
+            emptied.and(new LongBitHashSet(span));
+
+            var expected = new LongOpenHashSet(oa);
+            expected.retainAll(ob);
+            assertEquals(expected.size(), la.intersectionSize(lb), span + ": intersectionSize mismatch");
+            assertEquals(expected.size(), lb.intersectionSize(la), span + ": intersectionSize not symmetric");
+            assertEquals((long) oa.size() + ob.size() - expected.size(), la.unionSize(lb), span + ": unionSize mismatch");
+            assertEquals((double) expected.size() / (oa.size() + ob.size() - expected.size()), la.jaccard(lb), 1e-12, span + ": jaccard mismatch");
+            assertEquals(1D, emptied.jaccard(new LongBitHashSet(span)), span + ": jaccard of empty sets");
+            assertEquals(la.size(), la.intersectionSize(la), span + ": intersectionSize with itself");
+            assertEquals(0, la.intersectionSize(emptied), span + ": intersectionSize with an emptied bucket");
+
+            assertTrue(la.intersects(lb), span + ": expected to intersect");
+            assertTrue(la.intersects(block), span + ": expected to intersect");
+            assertEquals(256, la.intersectionSize(block), span + ": intersectionSize with a full bucket");
+            assertFalse(la.intersects(emptied), span + ": intersects an emptied bucket");
+            assertFalse(emptied.intersects(la), span + ": emptied bucket intersects");
+
+            var sub = LongBitHashSet.intersection(la, lb);
+            assertTrue(la.containsAll(sub), span + ": containsAll of intersection");
+            assertTrue(lb.containsAll((LongCollection) sub), span + ": containsAll of intersection as a collection");
+            assertTrue(la.containsAll(emptied), span + ": containsAll of emptied set");
+            assertFalse(sub.containsAll(la), span + ": containsAll of superset");
+            sub.add(-1L);
+            assertFalse(la.containsAll(sub), span + ": containsAll with an extra long");
+        }
+        var narrow = new LongBitHashSet();
+        narrow.add(1L);
+        var wide = new LongBitHashSet(LongBitHashSet.Span.S4096);
+        wide.add(1L);
+        assertThrows(IllegalArgumentException.class, () -> narrow.intersectionSize(wide), "mixed spans");
+        assertTrue(narrow.containsAll((LongCollection) wide), "containsAll across spans");
+    }
+
+    @Test
+    public void filtering() {
+        for (var span : LongBitHashSet.Span.values()) {
+            var lbhs = new LongBitHashSet(span);
+            var lohs = new LongOpenHashSet();
+            for (int i = 0; i < 32768; i++) {
+                long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+                lbhs.add(rnd);
+                lohs.add(rnd);
+            }
+            // A full bucket and a run bucket, then shared with a snapshot.
+            for (long i = 1 << 24; i < (1 << 24) + 512; i++) {
+                lbhs.add(i);
+                lohs.add(i);
+            }
+            lbhs.remove((1 << 24) + 300);
+            lohs.remove((1 << 24) + 300);
+            var snapshot = lbhs.snapshot();
+            var expected = new LongOpenHashSet(lohs);
+
+            assertFalse(lbhs.removeIf(l -> false), span + ": removeIf of nothing changed");
+            assertEquals(lohs.removeIf(l -> (l & 3) == 0), lbhs.removeIf(l -> (l & 3) == 0), span + ": bad removeIf return");
+            assertEquals(lohs, lbhs, span + ": removeIf content mismatch");
+            assertEquals(expected, snapshot, span + ": snapshot changed with removeIf");
+
+            var few = new LongOpenHashSet();
+            var many = new LongOpenHashSet();
+            for (long l : lohs) {
+                if (random.nextInt(64) == 0) few.add(l);
+                if (random.nextInt(2) == 0) many.add(l);
+            }
+            for (int i = 0; i < 1024; i++) many.add(random.nextLong());
+            assertEquals(lohs.removeAll(few), lbhs.removeAll(few), span + ": bad removeAll return");
+            assertEquals(lohs, lbhs, span + ": removeAll of fewer content mismatch");
+            assertEquals(lohs.retainAll(many), lbhs.retainAll(many), span + ": bad retainAll return");
+            assertEquals(lohs, lbhs, span + ": retainAll content mismatch");
+            many.removeIf(l -> (l & 1) == 0);
+            assertEquals(lohs.removeAll(many), lbhs.removeAll(many), span + ": bad removeAll return");
+            assertEquals(lohs, lbhs, span + ": removeAll of more content mismatch");
+            assertEquals(expected, snapshot, span + ": snapshot changed with removeAll and retainAll");
+
+            // Removing through the iterator, both over the snapshot's shared buckets and converting its full bucket.
+            var itr = snapshot.iterator();
+            assertThrows(IllegalStateException.class, itr::remove, span + ": remove before next");
+            while (itr.hasNext()) {
+                long l = itr.nextLong();
+                if ((l & 1) != 0 || (l & -256L) == 1 << 24) {
+                    itr.remove();
+                    assertThrows(IllegalStateException.class, itr::remove, span + ": remove twice");
+                    expected.remove(l);
+                }
+            }
+            assertEquals(expected.size(), snapshot.size(), span + ": iterator remove size mismatch");
+            assertEquals(expected, snapshot, span + ": iterator remove content mismatch");
+            assertEquals(lohs, lbhs, span + ": lbhs changed with its snapshot");
+        }
+    }
+
+    @Test
+    public void scratch() {
+        for (var span : LongBitHashSet.Span.values()) {
+            var lbhs = new LongBitHashSet(span, true);
+            var lohs = new LongOpenHashSet();
+            LongBitHashSet snapshot = null;
+            var expected = new LongOpenHashSet();
+            int length = 0;
+            for (int round = 0; round < 8; round++) {
+                for (int i = 0; i < 16384; i++) {
+                    long rnd = (i & 3) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+                    assertEquals(lohs.add(rnd), lbhs.add(rnd), span + ": bad add return in round " + round);
+                }
+                for (int i = 0; i < 1024; i++) {
+                    long rnd = random.nextLong() & 0xFFFFFL;
+                    assertEquals(lohs.contains(rnd), lbhs.contains(rnd), span + ": bad contains in round " + round);
+                }
+                final long[] probe = lohs.toLongArray();
+                assertEquals(probe.length, lbhs.contains(probe, 0, probe.length, null), span + ": batched contains in round " + round);
+                assertEquals(lohs.size(), lbhs.size(), span + ": size mismatch in round " + round);
+                assertEquals(lohs, lbhs, span + ": content mismatch in round " + round);
+                if (round == 3) {
+                    snapshot = lbhs.snapshot();
+                    expected.addAll(lohs);
+                }
+
+                length = lbhs.buckets.length;
+                var reused = lbhs.fetch0(probe[0]);
+                lbhs.clear();
+                lohs.clear();
+                assertTrue(lbhs.isEmpty(), span + ": not empty after clear");
+                assertEquals(length, lbhs.buckets.length, span + ": directory released by clear");
+                assertFalse(lbhs.contains(probe[0]), span + ": stale long found after clear");
+                assertEquals(0, lbhs.contains(probe, 0, probe.length, null), span + ": stale longs found in batch after clear");
+                assertFalse(lbhs.iterator().hasNext(), span + ": stale longs iterated after clear");
+
+                // Lazily reset in place on first touch, unless shared with a snapshot.
+                final boolean shared = reused.shared();
+                lbhs.add(probe[0]);
+                lohs.add(probe[0]);
+                if (!shared && !(reused instanceof LongBitFullBucket) && !(reused instanceof LongBitRunBucket)) {
+                    assertTrue(reused == lbhs.fetch0(probe[0]), span + ": stale bucket not reused in round " + round);
+                }
+                assertEquals(1, lbhs.size(), span + ": size after reuse");
+                assertEquals(lohs, lbhs, span + ": content mismatch after reuse in round " + round);
+            }
+            assertEquals(expected, snapshot, span + ": snapshot changed with clear");
+            assertEquals(length, lbhs.buckets.length, span + ": directory shrunk over the rounds");
+
+            var copy = new LongBitHashSet(lbhs);
+            lbhs.clear();
+            assertEquals(lohs, copy, span + ": copy changed with clear");
+            lbhs.addAll(copy);
+            assertEquals(lohs, lbhs, span + ": addAll after clear");
+        }
+    }
+
+    @Test
+    public void internalIteration() {
+        var lbhs = new LongBitHashSet();
+        var lohs = new LongOpenHashSet();
+
+        for (int i = 0; i < 32768; i++) {
+            long rnd = (i & 1) == 0 ? random.nextLong() : random.nextLong() & 0xFFFFFL;
+            lbhs.add(rnd);
+            lohs.add(rnd);
+        }
+        // A full bucket, then a run bucket split off of one.
+        for (long i = 1 << 24; i < (1 << 24) + 512; i++) {
+            lbhs.add(i);
+            lohs.add(i);
+        }
+        lbhs.remove((1 << 24) + 300);
+        lohs.remove((1 << 24) + 300);
+
+        var seen = new LongOpenHashSet();
+        lbhs.forEach((long l) -> assertTrue(seen.add(l), "forEach produced " + l + " twice"));
+        assertEquals(lohs, seen, "forEach content mismatch");
+
+        for (int skip : new int[]{0, 1, 7, 1000}) {
+            seen.clear();
+            var itr = lbhs.iterator();
+            for (int i = 0; i < skip && itr.hasNext(); i++) seen.add(itr.nextLong());
+            itr.forEachRemaining((long l) -> assertTrue(seen.add(l), "j$itr forEachRemaining produced " + l + " twice"));
+            assertFalse(itr.hasNext(), "j$itr has more after forEachRemaining");
+            assertEquals(lohs, seen, "j$itr forEachRemaining content mismatch after " + skip);
+
+            seen.clear();
+            var itr2 = lbhs.new j$itr2();
+            for (int i = 0; i < skip && itr2.hasNext(); i++) seen.add(itr2.nextLong());
+            itr2.forEachRemaining((long l) -> assertTrue(seen.add(l), "j$itr2 forEachRemaining produced " + l + " twice"));
+            assertFalse(itr2.hasNext(), "j$itr2 has more after forEachRemaining");
+            assertEquals(lohs, seen, "j$itr2 forEachRemaining content mismatch after " + skip);
+        }
+    }
+
+    /**
+     * Splits down to a few levels, draining each leaf partly by advancing and partly in bulk.
+     */
+    private static void sinkSpliterator(LongBitHashSet lbhs, LongSpliterator spliterator, LongOpenHashSet seen, int depth) {
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED), "spliterator lost its size");
+        long expected = spliterator.estimateSize();
+        int before = seen.size();
+        if (depth < 6) {
+            // Advancing first leaves a partially drained bucket behind in this half.
+            spliterator.tryAdvance((long l) -> assertTrue(seen.add(l), "spliterator produced " + l + " twice"));
+            var prefix = spliterator.trySplit();
+            if (prefix != null) {
+                sinkSpliterator(lbhs, prefix, seen, depth + 1);
+            }
+            sinkSpliterator(lbhs, spliterator, seen, depth + 1);
+        } else {
+            for (int i = 0; i < 8; i++) {
+                spliterator.tryAdvance((long l) -> assertTrue(seen.add(l), "spliterator produced " + l + " twice"));
+            }
+            spliterator.forEachRemaining((long l) -> {
+                assertTrue(lbhs.contains(l), "spliterator produced non-existent long");
+                assertTrue(seen.add(l), "spliterator produced " + l + " twice");
+            });
+            assertEquals(0, spliterator.estimateSize(), "drained spliterator has a size");
+        }
+        assertEquals(expected, seen.size() - before, "spliterator size mismatch at depth " + depth);
+    }
+
+    private static void assertAlgebra(LongOpenHashSet a, LongOpenHashSet b, LongBitHashSet actual,
+                                      BiConsumer<LongOpenHashSet, LongOpenHashSet> op, String name) {
+        var expected = new LongOpenHashSet(a);
+        op.accept(expected, b);
+        assertEquals(expected.size(), actual.size(), name + ": size mismatch");
+        assertEquals(expected, actual, name + ": content mismatch");
+        sinkIterator(actual, actual.iterator(), expected.size());
+    }
+
     private static void sinkIterator(LongCollection lbhs, LongIterator itr, int size) {
         long l;
         var lohs = new LongOpenHashSet();
@@ -0,0 +1,32 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T18:57:13
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Relies on the test task enabling {@link LongBitHashSetMetrics#PROPERTY}.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+public class LongBitHashSetMetricsTest {
+    @Test
+    public void counters() {
+        assertTrue(LongBitHashSetMetrics.isEnabled(), "metrics not enabled by the test task");
+        // Other sets may be in use concurrently, so only test that the counters move.
+        long grows = LongBitHashSetMetrics.directoryGrows();
+        long resizes = LongBitHashSetMetrics.hashResizes();
+        long promotions = LongBitHashSetMetrics.bitSetPromotions();
+
+        var lbhs = new LongBitHashSet();
+        for (long i = 0; i < 1024; i++) lbhs.add(i << 8);
+        assertTrue(LongBitHashSetMetrics.directoryGrows() >= grows + 7, "directory grows not counted");
+
+        for (long i = 0; i < 256; i++) lbhs.add(i);
+        assertTrue(LongBitHashSetMetrics.hashResizes() > resizes, "hash resizes not counted");
+        assertTrue(LongBitHashSetMetrics.bitSetPromotions() > promotions, "bitset promotions not counted");
+        assertEquals(1024 + 255, lbhs.size(), "size mismatch");
+    }
+}
@@ -0,0 +1,52 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-18-10T02:07:55
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the bulk word operations against plain loops, including widths that leave a tail past the vector lanes.
+ * <p>
+ * This covers the baseline under {@code test}, and the overlays under {@code testJava17} and {@code testJava21}.
+ *
+ * @author KJP12
+ * @since ${version}
+ **/
+public class LongBitWordsTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void operations() {
+        for (int length : new int[]{1, 4, 15, 16, 17, 64, 67, 1024}) {
+            final long[] a = new long[length], b = new long[length];
+            for (int i = 0; i < length; i++) {
+                a[i] = random.nextLong();
+                b[i] = (i & 3) == 0 ? a[i] : random.nextLong();
+            }
+            final long[] or = a.clone(), and = a.clone(), andNot = a.clone(), xor = a.clone();
+            final long[] eor = new long[length], eand = new long[length], eandNot = new long[length], exor = new long[length];
+            int count = 0, andCount = 0;
+            for (int i = 0; i < length; i++) {
+                eor[i] = a[i] | b[i];
+                eand[i] = a[i] & b[i];
+                eandNot[i] = a[i] & ~b[i];
+                exor[i] = a[i] ^ b[i];
+                count += Long.bitCount(a[i]);
+                andCount += Long.bitCount(a[i] & b[i]);
+            }
+            LongBitWords.or(or, b);
+            LongBitWords.and(and, b);
+            LongBitWords.andNot(andNot, b);
+            LongBitWords.xor(xor, b);
+            assertArrayEquals(eor, or, length + ": or mismatch");
+            assertArrayEquals(eand, and, length + ": and mismatch");
+            assertArrayEquals(eandNot, andNot, length + ": andNot mismatch");
+            assertArrayEquals(exor, xor, length + ": xor mismatch");
+            assertEquals(count, LongBitWords.bitCount(a), length + ": bitCount mismatch");
+            assertEquals(andCount, LongBitWords.andCount(a, b), length + ": andCount mismatch");
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package net.kjp12.hachimitsu.collections;// Created 2026-17-10T16:41:20
+
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author KJP12
+ * @since ${version}
+ **/
+public class SortedLongBitHashSetTest {
+    private Random random = new Random(196188877885538304L);
+
+    @Test
+    public void navigation() {
+        var slbhs = new SortedLongBitHashSet();
+        var tree = new TreeSet<Long>();
+
+        assertThrows(NoSuchElementException.class, slbhs::firstLong, "first of empty");
+        assertThrows(NoSuchElementException.class, slbhs::lastLong, "last of empty");
+
+        fill(slbhs, tree);
+        assertOrder(tree, slbhs);
+
+        assertEquals((long) tree.first(), slbhs.firstLong(), "first mismatch");
+        assertEquals((long) tree.last(), slbhs.lastLong(), "last mismatch");
+        assertTrue(slbhs.spliterator().hasCharacteristics(Spliterator.SORTED | Spliterator.ORDERED), "spliterator unordered");
+        var expected = tree.iterator();
+        slbhs.longStream().forEachOrdered(l -> assertEquals((long) expected.next(), l, "stream out of order"));
+        var forEach = tree.iterator();
+        slbhs.forEach((long l) -> assertEquals((long) forEach.next(), l, "forEach out of order"));
+
+        for (int i = 0; i < 4096; i++) {
+            long l = probe();
+            assertNavigation(tree.ceiling(l), () -> slbhs.ceilingLong(l), "ceiling of " + l);
+            assertNavigation(tree.floor(l), () -> slbhs.floorLong(l), "floor of " + l);
+            assertNavigation(tree.higher(l), () -> slbhs.higherLong(l), "higher of " + l);
+            assertNavigation(tree.lower(l), () -> slbhs.lowerLong(l), "lower of " + l);
+        }
+
+        // Removing down to sparse buckets.
+        for (var itr = slbhs.iterator(); itr.hasNext(); ) {
+            long l = itr.nextLong();
+            if ((l & 3) != 0) {
+                itr.remove();
+                assertTrue(tree.remove(l), "slbhs: iterator produced non-existent long");
+            }
+        }
+        assertOrder(tree, slbhs);
+
+        // Adding new buckets after the index was built.
+        fill(slbhs, tree);
+        assertOrder(tree, slbhs);
+    }
+
+    @Test
+    public void views() {
+        var slbhs = new SortedLongBitHashSet();
+        var tree = new TreeSet<Long>();
+        fill(slbhs, tree);
+
+        for (int i = 0; i < 256; i++) {
+            long a = probe(), b = probe();
+            if (a > b) {
+                long t = a;
+                a = b;
+                b = t;
+            }
+            assertOrder(tree.headSet(b, false), slbhs.headSet(b));
+            assertOrder(tree.tailSet(a, true), slbhs.tailSet(a));
+            assertOrder(tree.subSet(a, true, b, false), slbhs.subSet(a, b));
+            assertOrder(tree.subSet(a, true, b, false), slbhs.tailSet(a).headSet(b));
+
+            var sub = slbhs.subSet(a, b);
+            long l = probe();
+            assertEquals(l >= a && l < b && tree.contains(l), sub.contains(l), "sub contains " + l);
+            if (l < a || l >= b) {
+                assertThrows(IllegalArgumentException.class, () -> sub.add(l), "sub add out of range");
+            }
+        }
+    }
+
+    @Test
+    public void iteratorFrom() {
+        var slbhs = new SortedLongBitHashSet();
+        var tree = new TreeSet<Long>();
+        fill(slbhs, tree);
+
+        for (int i = 0; i < 256; i++) {
+            long l = probe();
+            var itr = slbhs.iterator(l);
+            var forward = tree.tailSet(l, false).iterator();
+            while (forward.hasNext()) {
+                assertTrue(itr.hasNext(), "iterator from " + l + " ended early");
+                assertEquals((long) forward.next(), itr.nextLong(), "iterator from " + l + " forward mismatch");
+            }
+            assertFalse(itr.hasNext(), "iterator from " + l + " overran");
+
+            itr = slbhs.iterator(l);
+            var backward = tree.headSet(l, true).descendingIterator();
+            while (backward.hasNext()) {
+                assertTrue(itr.hasPrevious(), "iterator from " + l + " ended early backwards");
+                assertEquals((long) backward.next(), itr.previousLong(), "iterator from " + l + " backward mismatch");
+            }
+            assertFalse(itr.hasPrevious(), "iterator from " + l + " underran");
+        }
+    }
+
+    /**
+     * Fills with a mix of dense and sparse longs either side of zero, exercising every bucket type.
+     */
+    private void fill(SortedLongBitHashSet slbhs, TreeSet<Long> tree) {
+        for (int i = 0; i < 8192; i++) {
+            long l = probe();
+            assertEquals(tree.add(l), slbhs.add(l), "slbhs: bad add return");
+        }
+        // A full bucket and a dense bitset bucket.
+        for (long l = 4096; l < 4096 + 256; l++) {
+            tree.add(l);
+            slbhs.add(l);
+        }
+        for (long l = -4096; l < -4096 + 128; l++) {
+            tree.add(l);
+            slbhs.add(l);
+        }
+        tree.add(Long.MIN_VALUE);
+        slbhs.add(Long.MIN_VALUE);
+        tree.add(Long.MAX_VALUE);
+        slbhs.add(Long.MAX_VALUE);
+    }
+
+    private long probe() {
+        switch (random.nextInt(3)) {
+            case 0:
+                return random.nextInt(8192) - 4096;
+            case 1:
+                return random.nextLong() >> 20;
+            default:
+                return random.nextLong();
+        }
+    }
+
+    private static void assertNavigation(Long expected, NavigationSupplier actual, String message) {
+        if (expected == null) {
+            assertThrows(NoSuchElementException.class, actual::get, message);
+        } else {
+            assertEquals(expected.longValue(), actual.get(), message);
+        }
+    }
+
+    private static void assertOrder(NavigableSet<Long> expected, LongSortedSet actual) {
+        var itr = actual.iterator();
+        for (long l : expected) {
+            assertTrue(itr.hasNext(), "iterator ended early");
+            assertEquals(l, itr.nextLong(), "iterator out of order");
+        }
+        assertFalse(itr.hasNext(), "iterator overran");
+        assertEquals(expected.size(), actual.size(), "size mismatch");
+        if (expected.isEmpty()) {
+            assertThrows(NoSuchElementException.class, actual::firstLong, "first of empty view");
+            assertThrows(NoSuchElementException.class, actual::lastLong, "last of empty view");
+        } else {
+            assertEquals((long) expected.first(), actual.firstLong(), "first mismatch");
+            assertEquals((long) expected.last(), actual.lastLong(), "last mismatch");
+        }
+    }
+
+    @FunctionalInterface
+    private interface NavigationSupplier {
+        long get();
+    }
+}